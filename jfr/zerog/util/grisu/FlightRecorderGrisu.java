@@ -0,0 +1,66 @@
+package zerog.util.grisu;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An {@link InstrumentedGrisu} that also sends a sample of calls to Flight
+ * Recorder as {@code zerog.grisu.Format} events with the value, digit count
+ * and latency. It lives in its own module because jdk.jfr is Java 11, where
+ * the library itself still runs on 8.
+ */
+public class FlightRecorderGrisu extends InstrumentedGrisu {
+
+    /**
+     * One in this many double calls is timed and sent to Flight Recorder, 0 for none.
+     */
+    public final int sample_every;
+
+    /**
+     * @param sample_every One in this many calls makes a Flight Recorder event, 0 for none.
+     */
+    public FlightRecorderGrisu( int max_int_digits, int max_frac_digits, char exp_char, Engine engine, int sample_every ) {
+
+        super( max_int_digits, max_frac_digits, exp_char, engine );
+
+        if( sample_every < 0 )
+            throw new IllegalArgumentException( "negative sample_every" );
+
+        this.sample_every = sample_every;
+    }
+
+    /**
+     * The same settings as the given formatter.
+     */
+    public static FlightRecorderGrisu of( Grisu fmt, int sample_every ) {
+
+        return new FlightRecorderGrisu( fmt.max_int_digits, fmt.max_frac_digits, (char)fmt.exp_char, fmt.engine, sample_every );
+    }
+
+    @Override
+    public int doubleToBytes( byte[] buffer, int boffset, double value ) {
+
+        if( sample_every == 0 || ThreadLocalRandom.current().nextInt( sample_every ) != 0 )
+            return super.doubleToBytes( buffer, boffset, value );
+
+        return sampled( buffer, boffset, value );
+    }
+
+    private int sampled( byte[] buffer, int boffset, double value ) {
+
+        FormatEvent e = new FormatEvent();
+        e.begin();
+
+        int len = super.doubleToBytes( buffer, boffset, value );
+
+        e.end();
+        if( e.shouldCommit() ) {
+            e.value = value;
+            e.length = len;
+            e.digits = significantDigits( buffer, boffset, len, exp_char );
+            e.exponent = indexOf( buffer, boffset, len, exp_char ) >= 0;
+            e.commit();
+        }
+
+        return len;
+    }
+}
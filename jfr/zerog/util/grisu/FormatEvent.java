@@ -0,0 +1,36 @@
+package zerog.util.grisu;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A sampled {@link FlightRecorderGrisu#doubleToBytes(byte[], int, double)}
+ * call for Flight Recorder, its duration is the latency. Only touched when
+ * sampling is on.
+ */
+@Name( "zerog.grisu.Format" )
+@Label( "Grisu Format" )
+@Category( "zerog" )
+@Description( "A sampled double formatted by a FlightRecorderGrisu" )
+@StackTrace( false )
+class FormatEvent extends Event {
+
+    @Label( "Value" )
+    double value;
+
+    @Label( "Digits" )
+    @Description( "Significant digits printed" )
+    int digits;
+
+    @Label( "Length" )
+    @Description( "Bytes written" )
+    int length;
+
+    @Label( "Exponent" )
+    @Description( "Whether it was written with an exponent" )
+    boolean exponent;
+}
@@ -0,0 +1,59 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+public class FlightRecorderGrisuTest {
+
+    private static String format( Grisu g, double d ) {
+        byte[] b = new byte[Grisu.longest_double_output];
+        return new String( b, 0, g.doubleToBytes( b, 0, d ));
+    }
+
+    @Test
+    public void test_flight_recorder() throws Exception {
+        FlightRecorderGrisu g = FlightRecorderGrisu.of( Grisu.fmt, 1 );
+        Path file = Files.createTempFile( "grisu", ".jfr" );
+        try {
+            try( Recording rec = new Recording() ) {
+                rec.enable( "zerog.grisu.Format" );
+                rec.start();
+                for( int i = 0; i < 100; ++i )
+                    format( g, 1.25e-200 );
+                rec.stop();
+                rec.dump( file );
+            }
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents( file );
+            assertEquals( 100, events.size() );
+            RecordedEvent e = events.get( 0 );
+            assertEquals( "zerog.grisu.Format", e.getEventType().getName() );
+            assertEquals( 3, e.getInt( "digits" ));
+            assertEquals( 9, e.getInt( "length" ));
+            assertTrue( e.getBoolean( "exponent" ));
+
+            // still counted underneath
+            assertEquals( 100, g.engine_path.sum() );
+        }
+        finally {
+            Files.delete( file );
+        }
+    }
+
+    @Test
+    public void test_unsampled() {
+        FlightRecorderGrisu g = FlightRecorderGrisu.of( Grisu.shortest_fmt, 0 );
+        assertEquals( "1.5e+300", format( g, 1.5e300 ));
+        assertEquals( 1, g.exponent.sum() );
+    }
+}
@@ -0,0 +1,103 @@
+package zerog.util.grisu;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The entry points AllocationTest checks, for JMH's gc profiler, which main()
+ * turns on. Look at gc.alloc.rate.norm: 0 B/op for the byte[] and
+ * ByteBuffer calls, and just the String for the String ones.
+ * <pre>
+ * java -jar grisu-jmh/target/benchmarks.jar AllocationBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AllocationBenchmark {
+
+    private static final int nmask = 1024*1024 - 1;
+
+    public double[] values = Corpus.generate( Corpus.Shape.SPECIALS, nmask + 1, 42 );
+    public byte[] bresults = new byte[Grisu.longest_fixed_output + 8];
+    public ByteBuffer direct = ByteBuffer.allocateDirect( 64 );
+    public StringBuilder sb = new StringBuilder( 64 );
+    public int i;
+
+    private double next() {
+        double d = values[i];
+        i = (i + 1) & nmask;
+        return d;
+    }
+
+    @Benchmark
+    public int alloc_bytes() {
+        return Grisu.fmt.doubleToBytes( bresults, 0, next() );
+    }
+
+    @Benchmark
+    public int alloc_shortest() {
+        return Grisu.shortest_fmt.doubleToBytes( bresults, 0, next() );
+    }
+
+    @Benchmark
+    public int alloc_direct() {
+        direct.clear();
+        return Grisu.fmt.doubleToBytes( direct, next() );
+    }
+
+    @Benchmark
+    public int alloc_fixed() {
+        return Grisu.fmt.doubleToBytesFixed( bresults, 0, next(), 4 );
+    }
+
+    @Benchmark
+    public int alloc_float() {
+        return Grisu.fmt.floatToBytes( bresults, 0, (float)next() );
+    }
+
+    @Benchmark
+    public int alloc_long() {
+        return Grisu.longToBytes( bresults, 0, Double.doubleToRawLongBits( next() ));
+    }
+
+    @Benchmark
+    public StringBuilder alloc_append() {
+        sb.setLength( 0 );
+        return Grisu.fmt.appendDouble( sb, next() );
+    }
+
+    @Benchmark
+    public String alloc_string() {
+        return Grisu.fmt.doubleToString( next() );
+    }
+
+    @Benchmark
+    public String alloc_stateless() {
+        return Grisu.fmt.doubleToStringStateless( next() );
+    }
+
+    @Benchmark
+    public String alloc_jdkstring() {
+        return Double.toString( next() );
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + AllocationBenchmark.class.getSimpleName() + ".*")
+                .addProfiler( GCProfiler.class )
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
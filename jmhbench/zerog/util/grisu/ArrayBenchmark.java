@@ -0,0 +1,94 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * A whole column of doubles to comma separated text, with formatArray
+ * against a doubleToBytes call per element. Both stream through the same
+ * 64KB buffer. The elements counter gives the per element rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ArrayBenchmark {
+    
+    private static final Grisu g = Grisu.fmt;
+    
+    @Param({ "1024", "65536", "1048576" })
+    public int size;
+
+    public double[] values;
+    public byte[] out;
+
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class Elements {
+        public long elements;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            elements = 0;
+        }
+    }
+        
+    @Setup
+    public void setup() {
+        values = new double[size];
+        out = new byte[64 * 1024];
+
+        Random r = new Random();
+        for( int i = 0; i < values.length; ++i ) {
+            values[i] = r.nextDouble() * 1000;
+        }
+    }
+    
+    @Benchmark
+    public int array_bulk( Elements e ) {
+        int total = 0;
+        for( int i = 0; i < values.length; ) {
+            long res = g.formatArray( values, i, values.length, (byte)',', out, 0 );
+            total += StuffedPair.car( res );
+            i = StuffedPair.cdr( res );
+        }
+
+        e.elements += values.length;
+        return total;
+    }
+    
+    @Benchmark
+    public int array_single( Elements e ) {
+        int total = 0;
+        int pos = 0;
+        for( int i = 0; i < values.length; ++i ) {
+            if( pos > out.length - Grisu.longest_double_output - 1 ) {
+                total += pos;
+                pos = 0;
+            }
+
+            pos += g.doubleToBytes( out, pos, values[i] );
+            if( i != values.length - 1 )
+                out[pos++] = ',';
+        }
+
+        e.elements += values.length;
+        return total + pos;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ArrayBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,173 @@
+package zerog.util.grisu;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the tracked suites, writes the JMH JSON results, and compares every
+ * score against a baseline of earlier scores. It exits with 1 when any
+ * benchmark is slower than its baseline by more than the threshold, so it
+ * can gate a build:
+ * <pre>
+ * java -cp grisu-jmh/target/benchmarks.jar zerog.util.grisu.BenchmarkRunner \
+ *     [-include regex] [-json results.json] [-baseline grisu-jmh/baseline.properties] \
+ *     [-threshold 0.10] [-quick] [-update]
+ * </pre>
+ * The baseline is a properties file of benchmark, with its parameters, to
+ * score. Scores only compare on the same machine and JVM, so {@code -update}
+ * rewrites it from this run rather than comparing, which is how a machine
+ * gets its first baseline. Benchmarks missing from the baseline are
+ * reported but never fail.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * The suites the baseline covers.
+     */
+    static final String default_include = "zerog\\.util\\.grisu\\.(Int|LowPrec|Random|Edge)Benchmark\\.";
+
+    public static void main( String[] args ) throws RunnerException, IOException {
+
+        String include = default_include;
+        String json = "grisu-jmh-results.json";
+        String baseline = "grisu-jmh/baseline.properties";
+        double threshold = 0.10;
+        boolean quick = false;
+        boolean update = false;
+
+        for( int a = 0; a < args.length; ++a ) {
+            switch( args[a] ) {
+                case "-include": include = args[++a]; break;
+                case "-json": json = args[++a]; break;
+                case "-baseline": baseline = args[++a]; break;
+                case "-threshold": threshold = Double.parseDouble( args[++a] ); break;
+                case "-quick": quick = true; break;
+                case "-update": update = true; break;
+                default:
+                    System.err.println( "unknown option " + args[a] );
+                    System.exit( 2 );
+            }
+        }
+
+        ChainedOptionsBuilder opt = new OptionsBuilder()
+                .include( include )
+                .forks( 1 )
+                .resultFormat( ResultFormatType.JSON )
+                .result( json );
+
+        if( quick ) {
+            opt.warmupIterations( 3 ).warmupTime( TimeValue.milliseconds( 200 ))
+               .measurementIterations( 5 ).measurementTime( TimeValue.milliseconds( 200 ));
+        }
+        else {
+            opt.warmupIterations( 10 ).warmupTime( TimeValue.seconds( 1 ))
+               .measurementIterations( 10 ).measurementTime( TimeValue.seconds( 1 ));
+        }
+
+        Collection<RunResult> results = new Runner( opt.build() ).run();
+
+        Map<String,RunResult> scores = new TreeMap<>();
+        for( RunResult rr : results )
+            scores.put( key( rr.getParams() ), rr );
+
+        if( update ) {
+            writeBaseline( baseline, scores );
+            System.out.println( "wrote " + scores.size() + " scores to " + baseline );
+            return;
+        }
+
+        Properties base = new Properties();
+        try( InputStream in = new FileInputStream( baseline )) {
+            base.load( in );
+        }
+        catch( IOException e ) {
+            System.out.println( "no baseline at " + baseline + ", run with -update to make one" );
+            return;
+        }
+
+        int regressions = 0;
+        System.out.println();
+        System.out.printf( "%-60s %12s %12s %8s%n", "benchmark", "baseline", "score", "change" );
+
+        for( Map.Entry<String,RunResult> e : scores.entrySet() ) {
+
+            Result<?> r = e.getValue().getPrimaryResult();
+            String b = base.getProperty( e.getKey() );
+
+            if( b == null ) {
+                System.out.printf( "%-60s %12s %12.3f %8s%n", e.getKey(), "-", r.getScore(), "new" );
+                continue;
+            }
+
+            // positive is worse whichever way the mode counts
+            double was = Double.parseDouble( b );
+            double change = (r.getScore() - was) / was;
+            if( e.getValue().getParams().getMode() == Mode.Throughput )
+                change = -change;
+
+            boolean bad = change > threshold;
+            if( bad )
+                regressions++;
+
+            System.out.printf( "%-60s %12.3f %12.3f %+7.1f%%%s%n", e.getKey(), was, r.getScore(), change * 100, bad ? "  REGRESSION" : "" );
+        }
+
+        if( regressions > 0 ) {
+            System.out.println( regressions + " over the " + threshold * 100 + "% threshold" );
+            System.exit( 1 );
+        }
+    }
+
+    /**
+     * The benchmark name with any parameters, eg {@code EdgeBenchmark.edge_grisubuf:shape=pow2}.
+     */
+    static String key( BenchmarkParams p ) {
+
+        String name = p.getBenchmark();
+        StringBuilder sb = new StringBuilder( name.substring( name.lastIndexOf( '.', name.lastIndexOf( '.' ) - 1 ) + 1 ));
+        for( String k : p.getParamsKeys() )
+            sb.append( ':' ).append( k ).append( '=' ).append( p.getParam( k ));
+
+        return sb.toString();
+    }
+
+    static void writeBaseline( String file, Map<String,RunResult> scores ) throws IOException {
+
+        // Properties would write them unordered and with a date, so by hand
+        StringBuilder sb = new StringBuilder();
+        sb.append( "# BenchmarkRunner scores, lower is better for avgt\n" );
+        sb.append( "# " ).append( System.getProperty( "java.vm.name" )).append( ' ' )
+          .append( System.getProperty( "java.version" )).append( ", " )
+          .append( Runtime.getRuntime().availableProcessors() ).append( " cpus, " )
+          .append( System.getProperty( "os.name" )).append( ' ' ).append( System.getProperty( "os.arch" )).append( '\n' );
+
+        for( Map.Entry<String,RunResult> e : scores.entrySet() ) {
+            Result<?> r = e.getValue().getPrimaryResult();
+            sb.append( e.getKey().replace( ":", "\\:" ).replace( "=", "\\=" )).append( '=' )
+              .append( String.format( Locale.ROOT, "%.3f", r.getScore() )).append( '\n' );
+        }
+
+        try( OutputStream out = new FileOutputStream( file )) {
+            out.write( sb.toString().getBytes( "ISO-8859-1" ));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package zerog.util.grisu;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Comma separated doubles into a 1MB buffer, in bytes per second. The
+ * byte[] then copy version is what callers had to do before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BufferBenchmark {
+    
+    private static final Grisu g = Grisu.fmt;
+    
+    private static final int nmask = 1024*1024 - 1;
+    private static final double[] random_values = new double[nmask + 1];
+    
+    @Param({ "direct", "heap" })
+    public String kind;
+
+    public ByteBuffer out;
+    public byte[] scratch;
+    public static int i;
+
+    /**
+     * Counts the bytes so JMH reports bytes/sec next to ops/sec.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class Written {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+        
+    @Setup
+    public void setup() {
+        i = 0;
+        out = kind.equals( "direct" ) ? ByteBuffer.allocateDirect( 1024 * 1024 ) : ByteBuffer.allocate( 1024 * 1024 );
+        scratch = new byte[Grisu.longest_double_output];
+
+        Random r = new Random();
+        for( int i = 0; i < random_values.length; ++i ) {
+            random_values[i] = r.nextDouble() * 1000;
+        }
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public ByteBuffer buf_grisu( Written w ) {
+        if( out.remaining() < Grisu.longest_double_output + 1 )
+            out.clear();
+
+        int len = g.doubleToBytes( out, random_values[i] );
+        out.put( (byte)',' );
+        w.bytes += len + 1;
+
+        i = (i + 1) & nmask;
+        return out;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public ByteBuffer buf_grisucopy( Written w ) {
+        if( out.remaining() < Grisu.longest_double_output + 1 )
+            out.clear();
+
+        int len = g.doubleToBytes( scratch, 0, random_values[i] );
+        out.put( scratch, 0, len );
+        out.put( (byte)',' );
+        w.bytes += len + 1;
+
+        i = (i + 1) & nmask;
+        return out;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + BufferBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(30)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
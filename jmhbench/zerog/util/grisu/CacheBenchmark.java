@@ -0,0 +1,99 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * GrisuCache against the plain formatter on a Zipfian stream: {@code distinct}
+ * prices where the k-th most common turns up in proportion to 1/k^skew. A
+ * skew of 0 is uniform, so the cache only pays when {@code distinct} is
+ * within its capacity; around 1 and up the few hot values carry it even
+ * when the tail doesn't fit. The hit rate is printed at the end of a trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheBenchmark {
+
+    private static final int nmask = 1024*1024 - 1;
+
+    @Param({ "0.0", "0.8", "1.2" })
+    public double skew;
+
+    @Param({ "1000", "100000" })
+    public int distinct;
+
+    @Param({ "4096" })
+    public int capacity;
+
+    public double[] values = new double[nmask + 1];
+    public byte[] bresults = new byte[Grisu.longest_double_output];
+    public GrisuCache cache;
+    public int i;
+
+    @Setup
+    public void setup() {
+        Random r = new Random( 42 );
+
+        double[] prices = new double[distinct];
+        for( int k = 0; k < distinct; ++k )
+            prices[k] = Math.round( r.nextDouble() * 1e7 ) / 100.0;
+
+        // inverse of the cumulative 1/k^skew weights
+        double[] cdf = new double[distinct];
+        double total = 0;
+        for( int k = 0; k < distinct; ++k ) {
+            total += 1 / Math.pow( k + 1, skew );
+            cdf[k] = total;
+        }
+
+        for( int j = 0; j < values.length; ++j ) {
+            int k = java.util.Arrays.binarySearch( cdf, r.nextDouble() * total );
+            k = k < 0 ? -k - 1 : k;
+            values[j] = prices[Math.min( k, distinct - 1 )];
+        }
+
+        cache = new GrisuCache( Grisu.fmt, capacity );
+        i = 0;
+    }
+
+    @TearDown
+    public void teardown() {
+        long n = cache.hits() + cache.misses();
+        if( n > 0 )
+            System.out.printf( "%nhit rate %.1f%%%n", 100.0 * cache.hits() / n );
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] zipf_grisubuf() {
+        Grisu.fmt.doubleToBytes( bresults, 0, values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] zipf_cached() {
+        cache.doubleToBytes( bresults, 0, values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + CacheBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,178 @@
+package zerog.util.grisu;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Seeded value streams shaped like real feeds, so benchmark runs can be
+ * compared with each other, and a loader for captured data. The same shape,
+ * size and seed always give the same doubles.
+ * <p>
+ * A captured file is nothing but raw 8 byte doubles, little-endian by
+ * default since that is what numpy's {@code tofile} and a C {@code fwrite}
+ * give on x86. To make one from the shapes here:
+ * <pre>
+ * java -cp grisu-jmh/target/benchmarks.jar zerog.util.grisu.Corpus prices 1000000 42 prices.bin
+ * </pre>
+ */
+public final class Corpus {
+
+    public enum Shape {
+
+        /**
+         * Prices from 0.01 to 100000, evenly spread in magnitude, with 2 to 6 decimals.
+         */
+        PRICES,
+
+        /**
+         * Half changes like -1.25 with 2 decimals, half levels like 87.5 with 1.
+         */
+        PERCENTAGES,
+
+        /**
+         * Full precision measurements from 1e-9 to 1e9.
+         */
+        SCIENTIFIC,
+
+        /**
+         * Increasing epoch seconds with microseconds, like a time.time() column.
+         */
+        TIMESTAMPS,
+
+        /**
+         * Prices and measurements with 1 in 20 NaN, Infinity, -Infinity or zero.
+         */
+        SPECIALS
+    }
+
+    private static final double[] pow10 = { 1, 10, 100, 1e3, 1e4, 1e5, 1e6 };
+
+    private static final int chunk = 64 * 1024;
+
+    private Corpus() {
+    }
+
+    public static double[] generate( Shape shape, int n, long seed ) {
+
+        Random r = new Random( seed );
+        double[] values = new double[n];
+        double t = 1.7e9;
+
+        for( int i = 0; i < n; ++i ) {
+            switch( shape ) {
+                case PRICES:
+                    values[i] = price( r );
+                    break;
+                case PERCENTAGES:
+                    values[i] = r.nextBoolean()
+                            ? Math.round( r.nextGaussian() * 250 ) / 100.0
+                            : Math.round( r.nextDouble() * 1000 ) / 10.0;
+                    break;
+                case SCIENTIFIC:
+                    values[i] = scientific( r );
+                    break;
+                case TIMESTAMPS:
+                    t += r.nextDouble() * 0.01;
+                    values[i] = Math.round( t * 1e6 ) / 1e6;
+                    break;
+                default:
+                    values[i] = special( r );
+            }
+        }
+
+        return values;
+    }
+
+    static double price( Random r ) {
+
+        int decimals = 2 + r.nextInt( 5 );
+        double v = Math.pow( 10, r.nextDouble() * 7 - 2 );
+        return Math.max( Math.round( v * pow10[decimals] ), 1 ) / pow10[decimals];
+    }
+
+    static double scientific( Random r ) {
+
+        return (1 + r.nextDouble() * 9) * Math.pow( 10, r.nextInt( 18 ) - 9 );
+    }
+
+    static double special( Random r ) {
+
+        switch( r.nextInt( 80 )) {
+            case 0: return Double.NaN;
+            case 1: return Double.POSITIVE_INFINITY;
+            case 2: return Double.NEGATIVE_INFINITY;
+            case 3: return 0;
+            default: return r.nextBoolean() ? price( r ) : scientific( r );
+        }
+    }
+
+    /**
+     * Reads a whole file of raw doubles, a chunk at a time so the file may be
+     * up to a full double[] rather than a full byte[].
+     */
+    public static double[] load( Path file, ByteOrder order ) throws IOException {
+
+        try( FileChannel ch = FileChannel.open( file, StandardOpenOption.READ )) {
+
+            long size = ch.size();
+            if( size % 8 != 0 )
+                throw new IOException( file + " is not a whole number of doubles" );
+            if( size / 8 > Integer.MAX_VALUE - 8 )
+                throw new IOException( file + " has " + size / 8 + " doubles, more than an array can hold" );
+
+            double[] values = new double[(int)(size / 8)];
+            ByteBuffer bb = ByteBuffer.allocate( chunk ).order( order );
+
+            for( int i = 0; i < values.length; ) {
+                bb.clear().limit( (int)Math.min( chunk, (values.length - i) * 8L ));
+                while( bb.hasRemaining() )
+                    if( ch.read( bb ) < 0 )
+                        throw new IOException( file + " was truncated while reading" );
+                bb.flip();
+                int n = bb.remaining() / 8;
+                bb.asDoubleBuffer().get( values, i, n );
+                i += n;
+            }
+
+            return values;
+        }
+    }
+
+    public static void save( Path file, double[] values, ByteOrder order ) throws IOException {
+
+        ByteBuffer bb = ByteBuffer.allocate( chunk ).order( order );
+
+        try( FileChannel ch = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING )) {
+            for( int i = 0; i < values.length; ) {
+                int n = Math.min( chunk / 8, values.length - i );
+                bb.clear();
+                bb.asDoubleBuffer().put( values, i, n );
+                bb.limit( n * 8 );
+                while( bb.hasRemaining() )
+                    ch.write( bb );
+                i += n;
+            }
+        }
+    }
+
+    /**
+     * Writes a corpus file: shape count seed file
+     */
+    public static void main( String[] args ) throws IOException {
+
+        if( args.length != 4 ) {
+            System.err.println( "usage: Corpus prices|percentages|scientific|timestamps|specials count seed file" );
+            System.exit( 2 );
+        }
+
+        Shape shape = Shape.valueOf( args[0].toUpperCase() );
+        double[] values = generate( shape, Integer.parseInt( args[1] ), Long.parseLong( args[2] ));
+        save( Paths.get( args[3] ), values, ByteOrder.LITTLE_ENDIAN );
+    }
+}
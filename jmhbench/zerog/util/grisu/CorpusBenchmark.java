@@ -0,0 +1,103 @@
+package zerog.util.grisu;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The formatters over a {@link Corpus}, one of the seeded shapes or a
+ * captured file of raw doubles:
+ * <pre>
+ * java -jar grisu-jmh/target/benchmarks.jar CorpusBenchmark -p shape=file -p file=ticks.bin -p order=little
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CorpusBenchmark {
+
+    @Param({ "prices", "percentages", "scientific", "timestamps", "specials" })
+    public String shape;
+
+    @Param({ "42" })
+    public long seed;
+
+    @Param({ "1048576" })
+    public int size;
+
+    @Param({ "" })
+    public String file;
+
+    @Param({ "little" })
+    public String order;
+
+    public double[] values;
+    public byte[] bresults;
+    public int i;
+
+    @Setup
+    public void setup() throws IOException {
+        if( !shape.equals( "file" )) {
+            values = Corpus.generate( Corpus.Shape.valueOf( shape.toUpperCase() ), size, seed );
+        }
+        else {
+            values = Corpus.load( Paths.get( file ), order.equals( "big" ) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN );
+            if( values.length == 0 )
+                throw new IOException( file + " is empty" );
+        }
+
+        bresults = new byte[Grisu.longest_double_output];
+        i = 0;
+    }
+
+    private double next() {
+        double d = values[i];
+        if( ++i == values.length )
+            i = 0;
+        return d;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String corpus_doubleto() {
+        return Double.toString( next() );
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String corpus_grisustr() {
+        return Grisu.fmt.doubleToString( next() );
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] corpus_grisubuf() {
+        Grisu.fmt.doubleToBytes( bresults, 0, next() );
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] corpus_shortest() {
+        Grisu.shortest_fmt.doubleToBytes( bresults, 0, next() );
+        return bresults;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + CorpusBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,94 @@
+package zerog.util.grisu;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Prices held as a scaled long: printed directly, through BigDecimal, and
+ * through a double.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecimalBenchmark {
+
+    private static final Grisu g = Grisu.fmt;
+
+    private static final int nmask = 1024*1024 - 1;
+    private static final long[] unscaled = new long[nmask + 1];
+    private static final int[] scales = new int[nmask + 1];
+    private static final double[] pow10 = { 1, 10, 100, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8 };
+
+    public static byte[] bresults;
+    public static int i;
+
+    @Setup()
+    public void setup() {
+        i = 0;
+        bresults = new byte[Grisu.longest_decimal_output];
+        Random r = new Random();
+
+        // prices from 0.01 to 100000 with 2 to 8 decimals
+        for( int i = 0; i < unscaled.length; ++i ) {
+            scales[i] = 2 + r.nextInt( 7 );
+            unscaled[i] = 1 + (long)(r.nextDouble() * 1e5 * pow10[scales[i]]);
+        }
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String dec_bigdecimal() {
+        String s = BigDecimal.valueOf( unscaled[i], scales[i] ).toPlainString();
+        i = (i + 1) & nmask;
+        return s;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] dec_viadouble() {
+        g.doubleToBytes( bresults, 0, unscaled[i] / pow10[scales[i]] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] dec_grisubuf() {
+        g.decimalToBytes( bresults, 0, unscaled[i], scales[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] dec_grisustrip() {
+        g.decimalToBytes( bresults, 0, unscaled[i], scales[i], true );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + DecimalBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(20)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,92 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The shapes RandomBenchmark never draws, since nextDouble() is always in
+ * [0, 1): subnormals, exponents out past 1e+250 and 1e-250, negative values,
+ * and exact powers of two, which sit on the boundary where the gap below is
+ * half the gap above.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EdgeBenchmark {
+
+    private static final int nmask = 1024*1024 - 1;
+
+    @Param({ "subnormal", "huge", "negative", "pow2" })
+    public String shape;
+
+    public double[] values;
+    public byte[] bresults;
+    public int i;
+
+    @Setup
+    public void setup() {
+        values = new double[nmask + 1];
+        bresults = new byte[Grisu.longest_double_output];
+        i = 0;
+
+        Random r = new Random( 42 );
+        for( int j = 0; j < values.length; ++j ) {
+            switch( shape ) {
+                case "subnormal":
+                    values[j] = Double.longBitsToDouble( r.nextLong() & DiyFp.u_doubleMantissaMask );
+                    break;
+                case "huge":
+                    // the outermost cached powers, either side
+                    double e = 250 + r.nextDouble() * 57;
+                    values[j] = Math.pow( 10, r.nextBoolean() ? e : -e );
+                    break;
+                case "negative":
+                    values[j] = -r.nextDouble() * Math.pow( 10, r.nextInt( 21 ) - 10 );
+                    break;
+                default:
+                    values[j] = Math.scalb( 1.0, r.nextInt( 2046 ) - 1022 );
+            }
+        }
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String edge_doubleto() {
+        String s = Double.toString( values[i] );
+        i = (i + 1) & nmask;
+        return s;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] edge_grisubuf() {
+        Grisu.fmt.doubleToBytes( bresults, 0, values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] edge_shortest() {
+        Grisu.shortest_fmt.doubleToBytes( bresults, 0, values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + EdgeBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,89 @@
+package zerog.util.grisu;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Price-like values printed to a fixed number of decimals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FixedBenchmark {
+    
+    private static final Grisu g = Grisu.fmt;
+    
+    private static final int nmask = 1024*1024 - 1;
+    
+    @Param({ "2", "4" })
+    public int decimals;
+
+    public String format;
+    public double[] fixed_values;
+    public static byte[] bresults;
+    public static int i;
+        
+    @Setup
+    public void setup() {
+        fixed_values =  new double[nmask + 1];
+        bresults = new byte[Grisu.longest_fixed_output + 8];
+        format = "%." + decimals + "f";
+        i = 0;
+
+        Random r = new Random();
+        for(int i = 0; i < fixed_values.length; ++i ) {
+            fixed_values[i] = r.nextInt( 100000000 ) / 10000.0 + r.nextDouble() * 1e-6;
+        }
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String fixed_strformat() {
+        String s = String.format( format, fixed_values[i] );
+        i = (i + 1) & nmask;
+        return s;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String fixed_bigdec() {
+        String s = BigDecimal.valueOf( fixed_values[i] ).setScale( decimals, RoundingMode.HALF_UP ).toPlainString();
+        i = (i + 1) & nmask;
+        return s;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String fixed_grisustr() {
+        String s = g.doubleToStringFixed( fixed_values[i], decimals );
+        i = (i + 1) & nmask;
+        return s;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] fixed_grisubuf() {
+        g.doubleToBytesFixed( bresults, 0, fixed_values[i], decimals );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + FixedBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(30)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
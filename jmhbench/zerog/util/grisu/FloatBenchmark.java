@@ -0,0 +1,81 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Floats through the float path against widening them for the double path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FloatBenchmark {
+    
+    private static final Grisu g = Grisu.fmt;
+    
+    private static final int nmask = 1024*1024 - 1;
+    private static final float[] float_values = new float[nmask + 1];
+    
+    public static byte[] bresults;
+    public static int i;
+        
+    @Setup
+    public void setup() {
+        i = 0;
+        bresults = new byte[30];
+        Random r = new Random();
+        
+        for( int i = 0; i < float_values.length; ++i ) {
+            float_values[i] = r.nextFloat() * 1000;
+        }
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String float_floatto() {
+        String s = Float.toString( float_values[i] );
+        i = (i + 1) & nmask;
+        return s;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String float_grisustr() {
+        String s = g.floatToString( float_values[i] );
+        i = (i + 1) & nmask;
+        return s;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] float_grisubuf() {
+        g.floatToBytes( bresults, 0, float_values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] float_widenbuf() {
+        g.doubleToBytes( bresults, 0, float_values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + FloatBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(30)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
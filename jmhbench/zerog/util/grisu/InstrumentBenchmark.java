@@ -0,0 +1,65 @@
+package zerog.util.grisu;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * What InstrumentedGrisu costs over the plain formatter on the prices
+ * corpus, counting only, and FlightRecorderGrisu with 1 in 1024 calls
+ * sampled, which needs Java 11. Run with -jvmArgs -XX:StartFlightRecording
+ * to have the events recorded too. The plain numbers here are after the
+ * subclasses are loaded; RandomBenchmark and friends never load them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InstrumentBenchmark {
+
+    private static final int nmask = 1024*1024 - 1;
+
+    public double[] values = Corpus.generate( Corpus.Shape.PRICES, nmask + 1, 42 );
+    public byte[] bresults = new byte[Grisu.longest_double_output];
+    public InstrumentedGrisu counted = InstrumentedGrisu.of( Grisu.fmt );
+    public InstrumentedGrisu sampled = FlightRecorderGrisu.of( Grisu.fmt, 1024 );
+    public int i;
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] inst_plain() {
+        Grisu.fmt.doubleToBytes( bresults, 0, values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] inst_counted() {
+        counted.doubleToBytes( bresults, 0, values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] inst_sampled() {
+        sampled.doubleToBytes( bresults, 0, values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + InstrumentBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,95 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * A whole numeric document of 10k elements: an object with a timestamp and
+ * ids, prices and quantities arrays. JsonWriter against a StringBuilder
+ * with Double.toString, the way a general purpose library builds it.
+ * Run with -prof gc to see the allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonBenchmark {
+
+    @Param({ "10000" })
+    public int size;
+
+    public long[] ids;
+    public double[] prices;
+    public double[] quantities;
+
+    public JsonWriter jw = new JsonWriter();
+    public StringBuilder sb = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        Random r = new Random( 42 );
+        int n = size / 3;
+        ids = new long[n];
+        prices = new double[n];
+        quantities = new double[size - 2 * n];
+        for( int i = 0; i < n; ++i ) {
+            ids[i] = r.nextInt( Integer.MAX_VALUE );
+            prices[i] = Math.round( r.nextDouble() * 100000 ) / 100.0;
+        }
+        for( int i = 0; i < quantities.length; ++i ) {
+            quantities[i] = r.nextDouble() * 1000;
+        }
+    }
+
+    @Benchmark
+    public int json_writer() {
+        jw.reset()
+            .beginObject()
+                .name( "ts" ).value( 1450000000000L )
+                .name( "ids" ).array( ids, 0, ids.length )
+                .name( "prices" ).array( prices, 0, prices.length )
+                .name( "quantities" ).array( quantities, 0, quantities.length )
+            .endObject();
+
+        return jw.length();
+    }
+
+    @Benchmark
+    public int string_builder() {
+        sb.setLength( 0 );
+        sb.append( "{\"ts\":" ).append( 1450000000000L ).append( ",\"ids\":[" );
+        for( int i = 0; i < ids.length; ++i ) {
+            if( i != 0 ) sb.append( ',' );
+            sb.append( ids[i] );
+        }
+        sb.append( "],\"prices\":[" );
+        for( int i = 0; i < prices.length; ++i ) {
+            if( i != 0 ) sb.append( ',' );
+            sb.append( prices[i] );
+        }
+        sb.append( "],\"quantities\":[" );
+        for( int i = 0; i < quantities.length; ++i ) {
+            if( i != 0 ) sb.append( ',' );
+            sb.append( quantities[i] );
+        }
+        sb.append( "]}" );
+
+        return sb.toString().getBytes( java.nio.charset.StandardCharsets.UTF_8 ).length;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + JsonBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,161 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Integer printing: the Grisu pair table against the JDK, and against the
+ * divide-by-100 loop the JDK's getChars uses, written out here on a byte[].
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LongBenchmark {
+
+    private static final int nmask = 1024*1024 - 1;
+    private static final long[] random_longs = new long[nmask + 1];
+    private static final int[] random_ints = new int[nmask + 1];
+
+    private static final byte[] ones = new byte[100];
+    private static final byte[] tens = new byte[100];
+    static {
+        for( int i = 0; i < 100; ++i ) {
+            ones[i] = (byte)('0' + i % 10);
+            tens[i] = (byte)('0' + i / 10);
+        }
+    }
+
+    public static byte[] bresults;
+    public static StringBuilder sbresults = new StringBuilder();
+    public static int i;
+
+    @Setup()
+    public void setup() {
+        i = 0;
+        bresults = new byte[Grisu.longest_long_output];
+        Random r = new Random();
+
+        // spread over every length, not just the 19 digit ones
+        for( int i = 0; i < random_longs.length; ++i ) {
+            random_longs[i] = r.nextLong() >> r.nextInt( 64 );
+            random_ints[i] = (int)random_longs[i];
+        }
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String long_tostring() {
+        String s = Long.toString( random_longs[i] );
+        i = (i + 1) & nmask;
+        return s;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public StringBuilder long_sbappend() {
+        sbresults.setLength( 0 );
+        sbresults.append( random_longs[i] );
+        i = (i + 1) & nmask;
+        return sbresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] long_getchars() {
+        getChars( bresults, random_longs[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] long_grisubuf() {
+        Grisu.longToBytes( bresults, 0, random_longs[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public String int_tostring() {
+        String s = Integer.toString( random_ints[i] );
+        i = (i + 1) & nmask;
+        return s;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] int_getchars() {
+        getChars( bresults, random_ints[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] int_grisubuf() {
+        Grisu.intToBytes( bresults, 0, random_ints[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+
+    /**
+     * The shape of Long.getChars: count, then two digits at a time from the
+     * right on the negative value so MIN_VALUE needs no special case.
+     */
+    static int getChars( byte[] buf, long v ) {
+
+        int neg = v < 0 ? 1 : 0;
+        if( v > 0 )
+            v = -v;
+
+        int len = neg;
+        long t = v;
+        do {
+            len++;
+            t /= 10;
+        } while( t != 0 );
+
+        int p = len;
+        while( v <= -100 ) {
+            long q = v / 100;
+            int r = (int)(q * 100 - v);
+            v = q;
+            buf[--p] = ones[r];
+            buf[--p] = tens[r];
+        }
+
+        buf[--p] = (byte)('0' - v % 10);
+        if( v <= -10 )
+            buf[--p] = (byte)('0' - v / 10);
+
+        if( neg != 0 )
+            buf[0] = '-';
+
+        return len;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + LongBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(20)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -28,7 +28,7 @@ public class LowPrecBenchmark {
         bresults = new byte[30];
         i = 0;
 
-        Random r = new Random();
+        Random r = new Random( 42 );
         int[] pows = new int[] { 1, 10, 100, 1000, 10000, 100000, 1000000 };
         for(int i = 0; i < lowp_values.length; ++i ) {
             lowp_values[i] = (double)(1 + r.nextInt( 10000 )) / (double)pows[r.nextInt( pows.length )];
@@ -0,0 +1,100 @@
+package zerog.util.grisu;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * About 1GB of newline separated doubles to a file: the mapped writer, a
+ * GrisuWriter over a FileOutputStream, and formatting into one big array
+ * then one write through Files.newOutputStream. Single shot since each run is a whole export. Needs a
+ * heap of a couple of GB for the array case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MappedBenchmark {
+
+    /** Output bytes wanted, each value is around 18 */
+    @Param({ "1073741824" })
+    public long bytes;
+
+    public double[] values = new double[1 << 16];
+    public int count;
+    public Path path;
+
+    @Setup
+    public void setup() throws IOException {
+        Random r = new Random( 42 );
+        for( int i = 0; i < values.length; ++i ) {
+            values[i] = r.nextDouble() * 1000;
+        }
+
+        count = (int)(bytes / 18);
+        path = Files.createTempFile( "grisu", ".txt" );
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        Files.deleteIfExists( path );
+    }
+
+    @Benchmark
+    public long mapped() throws IOException {
+        MappedGrisuWriter w = new MappedGrisuWriter( path );
+        for( int i = 0; i < count; ++i ) {
+            w.writeDouble( values[i & 0xffff] );
+            w.writeByte( '\n' );
+        }
+        long len = w.length();
+        w.close();
+        return len;
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        GrisuWriter w = new GrisuWriter( new FileOutputStream( path.toFile() ));
+        for( int i = 0; i < count; ++i ) {
+            w.writeDouble( values[i & 0xffff] );
+            w.writeByte( '\n' );
+        }
+        w.close();
+        return Files.size( path );
+    }
+
+    @Benchmark
+    public long files_write() throws IOException {
+        byte[] out = new byte[(int)Math.min( Integer.MAX_VALUE - 8, (long)count * (Grisu.longest_double_output + 1) )];
+        int pos = 0;
+        for( int i = 0; i < count && pos <= out.length - Grisu.longest_double_output - 1; ++i ) {
+            pos += Grisu.fmt.doubleToBytes( out, pos, values[i & 0xffff] );
+            out[pos++] = '\n';
+        }
+        try( OutputStream os = Files.newOutputStream( path )) {
+            os.write( out, 0, pos );
+        }
+        return pos;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + MappedBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(2)
+                .measurementIterations(5)
+                .forks(1)
+                .jvmArgs("-Xmx4g")
+                .build();
+
+        new Runner(opt).run();
+    }
+}
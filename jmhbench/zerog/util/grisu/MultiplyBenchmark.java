@@ -0,0 +1,84 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The 64x64 to 128 bit multiplies alone, the plain Java versions against
+ * whatever DiyFp picked at load, which is the Math intrinsic on Java 9+ for
+ * the signed high half and Java 18+ for the unsigned one.
+ * <p>
+ * For the end to end difference run RandomBenchmark and ShortestBenchmark
+ * once as is and once with -Dzerog.grisu.portableMultiply=true on each JDK,
+ * which is what {@link #main(String[])} here does for all three.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MultiplyBenchmark {
+
+    private static final int mask = 1023;
+
+    public long[] xs = new long[mask + 1];
+    public long[] ys = new long[mask + 1];
+    public int i;
+
+    @Setup
+    public void setup() {
+        Random r = new Random( 42 );
+        for( int k = 0; k <= mask; ++k ) {
+            xs[k] = r.nextLong();
+            ys[k] = r.nextLong();
+        }
+    }
+
+    @Benchmark
+    public long significands_portable() {
+        int k = i++ & mask;
+        return DiyFp.u_portableMultiplySignificands( xs[k], ys[k] );
+    }
+
+    @Benchmark
+    public long significands_selected() {
+        int k = i++ & mask;
+        return DiyFp.u_multiplySignificands( xs[k], ys[k] );
+    }
+
+    @Benchmark
+    public long high_portable() {
+        int k = i++ & mask;
+        return DiyFp.portableMultiplyHigh( xs[k], ys[k] );
+    }
+
+    @Benchmark
+    public long high_selected() {
+        int k = i++ & mask;
+        return DiyFp.multiplyHigh( xs[k], ys[k] );
+    }
+
+    @Benchmark
+    public long unsigned_high_selected() {
+        int k = i++ & mask;
+        return DiyFp.u_multiplyHigh( xs[k], ys[k] );
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for( String portable : new String[] { "false", "true" } ) {
+            Options opt = new OptionsBuilder()
+                    .include(".*(" + MultiplyBenchmark.class.getSimpleName() + "|RandomBenchmark|ShortestBenchmark).*")
+                    .warmupIterations(10)
+                    .measurementIterations(10)
+                    .forks(1)
+                    .jvmArgsAppend("-Dzerog.grisu.portableMultiply=" + portable)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package zerog.util.grisu;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Scaling of the fork/join formatter over a 16M element column, from one
+ * worker up. The sequential formatArray run is the baseline; into a byte
+ * array and into a channel that throws the bytes away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParallelBenchmark {
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int threads;
+
+    @Param({ "16777216" })
+    public int size;
+
+    public double[] values;
+    public byte[] out;
+    public ForkJoinPool pool;
+    public ParallelFormatter pf;
+    public WritableByteChannel sink;
+
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class Elements {
+        public long elements;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            elements = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        values = new double[size];
+
+        Random r = new Random( 42 );
+        for( int i = 0; i < values.length; ++i ) {
+            values[i] = r.nextDouble() * 1000;
+        }
+
+        pool = new ForkJoinPool( threads );
+        pf = new ParallelFormatter( Grisu.fmt, pool, 16 * 1024 );
+        out = new byte[(int)pf.maxOutputLength( size )];
+        sink = new WritableByteChannel() {
+            public boolean isOpen() { return true; }
+            public void close() {}
+            public int write( ByteBuffer src ) {
+                int n = src.remaining();
+                src.position( src.limit() );
+                return n;
+            }
+        };
+    }
+
+    @TearDown
+    public void teardown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int sequential( Elements e ) {
+        if( threads != 1 )
+            return 0;
+
+        long res = Grisu.fmt.formatArray( values, 0, values.length, (byte)',', out, 0 );
+        e.elements += StuffedPair.cdr( res );
+        return StuffedPair.car( res );
+    }
+
+    @Benchmark
+    public int parallel_array( Elements e ) {
+        e.elements += values.length;
+        return pf.formatArray( values, 0, values.length, (byte)',', out, 0 );
+    }
+
+    @Benchmark
+    public long parallel_channel( Elements e ) throws IOException {
+        e.elements += values.length;
+        return pf.writeArray( values, 0, values.length, (byte)',', sink );
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ParallelBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
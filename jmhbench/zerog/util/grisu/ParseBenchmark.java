@@ -0,0 +1,74 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Parsing what Grisu printed, against Double.parseDouble on a new String.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParseBenchmark {
+    
+    private static final int nmask = 64*1024 - 1;
+    
+    @Param({ "random", "lowprec" })
+    public String dist;
+
+    public byte[] text;
+    public int[] offsets;
+    public static int i;
+        
+    @Setup
+    public void setup() {
+        i = 0;
+        text = new byte[(nmask + 1) * Grisu.longest_double_output];
+        offsets = new int[nmask + 2];
+
+        Random r = new Random();
+        int[] pows = new int[] { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+        int pos = 0;
+        for( int i = 0; i <= nmask; ++i ) {
+            double d = dist.equals( "random" )
+                    ? r.nextDouble()
+                    : (double)(1 + r.nextInt( 10000 )) / (double)pows[r.nextInt( pows.length )];
+            offsets[i] = pos;
+            pos += Grisu.fmt.doubleToBytes( text, pos, d );
+        }
+        offsets[nmask + 1] = pos;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public double parse_jdk() {
+        double d = Double.parseDouble( new String( text, offsets[i], offsets[i + 1] - offsets[i] ));
+        i = (i + 1) & nmask;
+        return d;
+    }
+    
+    @Benchmark
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public double parse_grisu() {
+        double d = DoubleParser.parseDouble( text, offsets[i], offsets[i + 1] - offsets[i] );
+        i = (i + 1) & nmask;
+        return d;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ParseBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(30)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,88 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The dense power table, every power of ten, against the paper's every 8th.
+ * The lookups alone use both tables side by side, the formatting uses
+ * whichever CachedPowers picked at load, so {@link #main(String[])} runs it
+ * once as is and once with -Dzerog.grisu.densePowers=true.
+ * <p>
+ * The values are random bit patterns, so the exponents and with them the
+ * table entries are spread over the whole range rather than the handful a
+ * feed of prices would touch. The README has the recorded results and when
+ * the dense table is worth its 8 KB. The same run without main:
+ * <pre>
+ * java -jar grisu-jmh/target/benchmarks.jar PowersBenchmark -wi 5 -w 1 -i 10 -r 1 -f 2 -jvmArgsAppend -Dzerog.grisu.densePowers=true
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PowersBenchmark {
+
+    private static final int mask = 1024 * 1024 - 1;
+
+    public double[] values = new double[mask + 1];
+    public int[] exps = new int[mask + 1];
+    public byte[] buffer = new byte[Grisu.longest_double_output];
+    public int i;
+
+    @Setup
+    public void setup() {
+        Random r = new Random( 42 );
+        for( int k = 0; k <= mask; ++k ) {
+            double d;
+            do {
+                d = Double.longBitsToDouble( r.nextLong() );
+            } while( d != d || Double.isInfinite( d ) || d == 0 );
+            values[k] = d;
+            exps[k] = Math.getExponent( d ) - 63;
+        }
+    }
+
+    @Benchmark
+    public long lookup_sparse() {
+        int k = i++ & mask;
+        int index = CachedPowers.cacheIndexFrom2Exp( exps[k], 8 );
+        return PowerTables.u_f[index] + PowerTables.e[index];
+    }
+
+    @Benchmark
+    public long lookup_dense() {
+        int k = i++ & mask;
+        int index = CachedPowers.cacheIndexFrom2Exp( exps[k], 1 );
+        return PowerTables.u_f_dense[index] + PowerTables.e_dense[index];
+    }
+
+    @Benchmark
+    public int grisu2() {
+        int k = i++ & mask;
+        return Grisu.fmt.doubleToBytes( buffer, 0, values[k] );
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.printf( "sparse %d entries, %d bytes; dense %d entries, %d bytes%n",
+                PowerTables.u_f.length, PowerTables.u_f.length * 12,
+                PowerTables.u_f_dense.length, PowerTables.u_f_dense.length * 12 );
+
+        for( String dense : new String[] { "false", "true" } ) {
+            Options opt = new OptionsBuilder()
+                    .include(".*" + PowersBenchmark.class.getSimpleName() + ".*")
+                    .warmupIterations(10)
+                    .measurementIterations(10)
+                    .forks(1)
+                    .jvmArgsAppend("-Dzerog.grisu.densePowers=" + dense)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+}
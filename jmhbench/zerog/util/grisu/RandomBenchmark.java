@@ -27,13 +27,14 @@ public class RandomBenchmark {
     private static final double[] random_values = new double[nmask + 1];
     
     public static byte[] bresults;
+    public static StringBuilder sbresults = new StringBuilder();
     public static int i;
         
     @Setup()
     public void setup() {
         i = 0;
         bresults = new byte[30];
-        Random r = new Random();
+        Random r = new Random( 42 );
         
         for( int i = 0; i < random_values.length; ++i ) {
             random_values[i] = r.nextDouble();
@@ -64,6 +65,24 @@ public class RandomBenchmark {
         return bresults;
     }
     
+   @Benchmark
+   @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public StringBuilder rand_sbdoubleto() {
+        sbresults.setLength( 0 );
+        sbresults.append( random_values[i] );
+        i = (i + 1) & nmask;
+        return sbresults;
+    }
+
+   @Benchmark
+   @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public StringBuilder rand_grisuappend() {
+        sbresults.setLength( 0 );
+        g.appendDouble( sbresults, random_values[i] );
+        i = (i + 1) & nmask;
+        return sbresults;
+    }
+    
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(".*" + RandomBenchmark.class.getSimpleName() + ".*")
@@ -0,0 +1,104 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import zerog.util.grisu.RowEncoder.Column;
+
+/**
+ * A 16 column numeric CSV row, a mix of fixed, shortest, scientific and
+ * integer columns. The row encoder against calling the matching Grisu
+ * method per cell by hand and against a StringBuilder with String.format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RowBenchmark {
+
+    public RowEncoder enc = new RowEncoder(
+            Column.integer(), Column.fixed( 2 ), Column.fixed( 2 ), Column.fixed( 4 ),
+            Column.shortest(), Column.shortest(), Column.shortest(), Column.shortest(),
+            Column.scientific(), Column.scientific(), Column.fixed( 6 ), Column.integer(),
+            Column.shortest(), Column.fixed( 2 ), Column.scientific(), Column.integer() );
+
+    public double[][] doubles = new double[256][12];
+    public long[][] longs = new long[256][3];
+    public byte[] out = new byte[enc.max_row_length];
+    public StringBuilder sb = new StringBuilder();
+    public int index;
+
+    @Setup
+    public void setup() {
+        Random r = new Random( 42 );
+        for( int i = 0; i < doubles.length; ++i ) {
+            for( int c = 0; c < 12; ++c )
+                doubles[i][c] = r.nextDouble() * Math.pow( 10, r.nextInt( 8 ) - 2 );
+            for( int c = 0; c < 3; ++c )
+                longs[i][c] = r.nextInt();
+        }
+    }
+
+    @Benchmark
+    public int encoder() {
+        int i = index++ & 255;
+        return enc.encode( doubles[i], longs[i], out, 0 );
+    }
+
+    @Benchmark
+    public int by_hand() {
+        int i = index++ & 255;
+        double[] d = doubles[i];
+        long[] l = longs[i];
+        int pos = 0;
+        pos += Grisu.fmt.doubleToBytes( out, pos, l[0] ); out[pos++] = ',';
+        pos += Grisu.fmt.doubleToBytesFixed( out, pos, d[0], 2 ); out[pos++] = ',';
+        pos += Grisu.fmt.doubleToBytesFixed( out, pos, d[1], 2 ); out[pos++] = ',';
+        pos += Grisu.fmt.doubleToBytesFixed( out, pos, d[2], 4 ); out[pos++] = ',';
+        pos += Grisu.shortest_fmt.doubleToBytes( out, pos, d[3] ); out[pos++] = ',';
+        pos += Grisu.shortest_fmt.doubleToBytes( out, pos, d[4] ); out[pos++] = ',';
+        pos += Grisu.shortest_fmt.doubleToBytes( out, pos, d[5] ); out[pos++] = ',';
+        pos += Grisu.shortest_fmt.doubleToBytes( out, pos, d[6] ); out[pos++] = ',';
+        pos += RowEncoder.scientific_fmt.doubleToBytes( out, pos, d[7] ); out[pos++] = ',';
+        pos += RowEncoder.scientific_fmt.doubleToBytes( out, pos, d[8] ); out[pos++] = ',';
+        pos += Grisu.fmt.doubleToBytesFixed( out, pos, d[9], 6 ); out[pos++] = ',';
+        pos += Grisu.fmt.doubleToBytes( out, pos, l[1] ); out[pos++] = ',';
+        pos += Grisu.shortest_fmt.doubleToBytes( out, pos, d[10] ); out[pos++] = ',';
+        pos += Grisu.fmt.doubleToBytesFixed( out, pos, d[11], 2 ); out[pos++] = ',';
+        pos += RowEncoder.scientific_fmt.doubleToBytes( out, pos, d[11] ); out[pos++] = ',';
+        pos += Grisu.fmt.doubleToBytes( out, pos, l[2] ); out[pos++] = '\n';
+        return pos;
+    }
+
+    @Benchmark
+    public int string_format() {
+        int i = index++ & 255;
+        double[] d = doubles[i];
+        long[] l = longs[i];
+        sb.setLength( 0 );
+        sb.append( l[0] ).append( ',' )
+          .append( String.format( "%.2f,%.2f,%.4f,", d[0], d[1], d[2] ))
+          .append( d[3] ).append( ',' ).append( d[4] ).append( ',' ).append( d[5] ).append( ',' ).append( d[6] ).append( ',' )
+          .append( String.format( "%e,%e,%.6f,", d[7], d[8], d[9] ))
+          .append( l[1] ).append( ',' ).append( d[10] ).append( ',' )
+          .append( String.format( "%.2f,%e,", d[11], d[11] ))
+          .append( l[2] ).append( '\n' );
+        return sb.length();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + RowBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
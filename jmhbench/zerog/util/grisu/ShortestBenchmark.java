@@ -0,0 +1,99 @@
+package zerog.util.grisu;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Grisu2 against the always shortest engine, on RandomBenchmark's values
+ * and on random bit patterns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShortestBenchmark {
+    
+    private static final Grisu g = Grisu.fmt;
+    private static final Grisu sg = Grisu.shortest_fmt;
+    
+    private static final int nmask = 1024*1024 - 1;
+    private static final double[] random_values = new double[nmask + 1];
+    private static final double[] random_bits = new double[nmask + 1];
+    
+    public static byte[] bresults;
+    public static int i;
+        
+    @Setup()
+    public void setup() {
+        i = 0;
+        bresults = new byte[30];
+        Random r = new Random();
+        
+        for( int i = 0; i < random_values.length; ++i ) {
+            random_values[i] = r.nextDouble();
+
+            // the whole exponent range, but no NaNs or infinities
+            do {
+                random_bits[i] = Double.longBitsToDouble( r.nextLong() );
+            } while( Double.isNaN( random_bits[i] ) || Double.isInfinite( random_bits[i] ));
+        }
+    }
+    
+   @Benchmark
+   @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] rand_grisu2buf() {
+        g.doubleToBytes( bresults, 0, random_values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+    
+   @Benchmark
+   @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] rand_shortestbuf() {
+        sg.doubleToBytes( bresults, 0, random_values[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+    
+   @Benchmark
+   @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] bits_grisu2buf() {
+        g.doubleToBytes( bresults, 0, random_bits[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+    
+   @Benchmark
+   @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    public byte[] bits_shortestbuf() {
+        sg.doubleToBytes( bresults, 0, random_bits[i] );
+        i = (i + 1) & nmask;
+        return bresults;
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ShortestBenchmark.class.getSimpleName() + ".*")
+//                .addProfiler( org.openjdk.jmh.profile.LinuxPerfAsmProfiler.class )
+                .warmupIterations(30)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+
+}
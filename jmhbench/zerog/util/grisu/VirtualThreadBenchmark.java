@@ -0,0 +1,110 @@
+package zerog.util.grisu;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 100k short tasks that each print one double to a String, on a virtual
+ * thread per task or on a pool of platform threads, through the ThreadLocal
+ * doubleToString and the stateless one. With virtual threads every task
+ * gets a new ThreadLocal scratch, the pool reuses one per worker.
+ * <p>
+ * Virtual threads need Java 21. The executor is looked up at runtime so
+ * this still builds on older JDKs, where the virtual case is skipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadBenchmark {
+
+    private static final MethodHandle new_virtual_executor = lookupVirtualExecutor();
+
+    @Param({ "virtual", "platform" })
+    public String threads;
+
+    @Param({ "threadlocal", "stateless" })
+    public String api;
+
+    @Param({ "100000" })
+    public int tasks;
+
+    public double[] values = new double[4096];
+    public ExecutorService platform;
+    public LongAdder sink = new LongAdder();
+
+    private static MethodHandle lookupVirtualExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic( Executors.class, "newVirtualThreadPerTaskExecutor",
+                                                            MethodType.methodType( ExecutorService.class ));
+        } catch( ReflectiveOperationException e ) {
+            return null;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random r = new Random( 42 );
+        for( int i = 0; i < values.length; ++i ) {
+            values[i] = r.nextDouble() * 1000;
+        }
+        platform = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+    }
+
+    @TearDown
+    public void teardown() {
+        platform.shutdown();
+    }
+
+    @Benchmark
+    public long run() throws Throwable {
+        final boolean stateless = api.equals( "stateless" );
+        ExecutorService ex;
+        if( threads.equals( "virtual" )) {
+            if( new_virtual_executor == null )
+                return 0;
+            ex = (ExecutorService)new_virtual_executor.invokeExact();
+        } else {
+            ex = platform;
+        }
+
+        final CountDownLatch done = new CountDownLatch( tasks );
+        for( int t = 0; t < tasks; ++t ) {
+            final double v = values[t & 4095];
+            ex.execute( () -> {
+                String s = stateless ? Grisu.fmt.doubleToStringStateless( v ) : Grisu.fmt.doubleToString( v );
+                sink.add( s.length() );
+                done.countDown();
+            } );
+        }
+        done.await();
+
+        if( ex != platform )
+            ex.shutdown();
+
+        return sink.sum();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + VirtualThreadBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(5)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
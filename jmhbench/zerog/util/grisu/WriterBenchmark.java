@@ -0,0 +1,78 @@
+package zerog.util.grisu;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * One CSV line of a double and a long at a time to a stream that throws the
+ * bytes away, GrisuWriter against a BufferedWriter fed by Double.toString.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WriterBenchmark {
+
+    private static final OutputStream nullout = new OutputStream() {
+        @Override public void write( int b ) {}
+        @Override public void write( byte[] b, int off, int len ) {}
+    };
+
+    public double[] values = new double[1024];
+    public long[] longs = new long[1024];
+    public int index;
+
+    public GrisuWriter gw;
+    public BufferedWriter bw;
+
+    @Setup
+    public void setup() {
+        Random r = new Random( 42 );
+        for( int i = 0; i < values.length; ++i ) {
+            values[i] = r.nextDouble() * 1000;
+            longs[i] = r.nextLong();
+        }
+
+        gw = new GrisuWriter( nullout );
+        bw = new BufferedWriter( new OutputStreamWriter( nullout, StandardCharsets.ISO_8859_1 ), 64 * 1024 );
+    }
+
+    @Benchmark
+    public void grisu_writer() throws IOException {
+        int i = index++ & 1023;
+        gw.writeDouble( values[i] );
+        gw.writeByte( ',' );
+        gw.writeLong( longs[i] );
+        gw.writeByte( '\n' );
+    }
+
+    @Benchmark
+    public void buffered_writer() throws IOException {
+        int i = index++ & 1023;
+        bw.write( Double.toString( values[i] ));
+        bw.write( ',' );
+        bw.write( Long.toString( longs[i] ));
+        bw.write( '\n' );
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + WriterBenchmark.class.getSimpleName() + ".*")
+                .warmupIterations(10)
+                .measurementIterations(10)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -1,5 +1,9 @@
 package zerog.util.grisu;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
 /*
  * Lack of stack-based storage in Java is a real killer sometimes.
  * I'll include the DiyFp methods just to make things clearer, but
@@ -20,6 +24,13 @@ public class DiyFp {
     static final long u_doubleMantissaMask = 0x000FFFFF_FFFFFFFFL;
     static final long u_doubleHiddenBit = 0x00100000_00000000L;
 
+    // IEEE float characteristics
+    static final int floatMantissaSize = 23;
+    static final int floatExponentBias = 127 + floatMantissaSize;
+    static final int u_floatExponentMask = 0x7F800000;
+    static final int u_floatMantissaMask = 0x007FFFFF;
+    static final int u_floatHiddenBit = 0x00800000;
+
     public long u_f;
     public int e;
 
@@ -99,8 +110,42 @@ public class DiyFp {
     // From here on down in the hacky static native-type stuff
     private static final long u_M32 = 0xFFFFFFFFL;
 
+    /**
+     * Set the system property {@code zerog.grisu.portableMultiply} to true to
+     * use the plain Java multiplies even when the JDK has intrinsics, for
+     * comparing the two.
+     */
+    static final boolean portable_multiply = Boolean.getBoolean( "zerog.grisu.portableMultiply" );
+
+    // Math.multiplyHigh is Java 9, Math.unsignedMultiplyHigh is Java 18. Both
+    // compile to a single mul. A static final handle is a constant to the JIT
+    // and inlines right through to the intrinsic, and still loads on Java 8.
+    private static final MethodHandle mh_multiplyHigh = portable_multiply ? null : lookupMath( "multiplyHigh" );
+    private static final MethodHandle mh_unsignedMultiplyHigh = portable_multiply ? null : lookupMath( "unsignedMultiplyHigh" );
+
+    private static MethodHandle lookupMath( String name ) {
+
+        try {
+            return MethodHandles.publicLookup().findStatic( Math.class, name,
+                    MethodType.methodType( long.class, long.class, long.class ));
+        } catch( ReflectiveOperationException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * The 128 bit product rounded to the high 64 bits, for Grisu2.
+     */
     static long u_multiplySignificands( long u_x, long u_y ) {
 
+        if( mh_multiplyHigh != null )
+            return u_multiplyHigh( u_x, u_y ) + ((u_x * u_y) >>> 63);
+
+        return u_portableMultiplySignificands( u_x, u_y );
+    }
+
+    static long u_portableMultiplySignificands( long u_x, long u_y ) {
+
         long u_a = u_x >>> 32;
         long u_b = u_x & u_M32;
         long u_c = u_y >>> 32;
@@ -116,6 +161,64 @@ public class DiyFp {
         return u_ac + (u_ad >>> 32) + (u_bc >>> 32) + (u_tmp >>> 32);
     }
 
+    /**
+     * The high 64 bits of the signed 128 bit product, {@code Math.multiplyHigh}
+     * when there is one.
+     */
+    static long multiplyHigh( long x, long y ) {
+
+        if( mh_multiplyHigh != null ) {
+            try {
+                return (long)mh_multiplyHigh.invokeExact( x, y );
+            } catch( Throwable t ) {
+                throw new AssertionError( t );
+            }
+        }
+
+        return portableMultiplyHigh( x, y );
+    }
+
+    static long portableMultiplyHigh( long x, long y ) {
+
+        long x1 = x >> 32;
+        long x2 = x & u_M32;
+        long y1 = y >> 32;
+        long y2 = y & u_M32;
+
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & u_M32) + x2 * y1;
+        long z0 = t >> 32;
+
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * The high 64 bits of the unsigned 128 bit product, {@code Math.unsignedMultiplyHigh}
+     * when there is one, else the signed one corrected for the sign bits.
+     */
+    static long u_multiplyHigh( long u_x, long u_y ) {
+
+        if( mh_unsignedMultiplyHigh != null ) {
+            try {
+                return (long)mh_unsignedMultiplyHigh.invokeExact( u_x, u_y );
+            } catch( Throwable t ) {
+                throw new AssertionError( t );
+            }
+        }
+
+        return u_unsignedFromSigned( multiplyHigh( u_x, u_y ), u_x, u_y );
+    }
+
+    /**
+     * The unsigned high 64 bits from the signed ones: a set top bit counted
+     * as -2^64 in one operand took the other operand off the high half.
+     */
+    static long u_unsignedFromSigned( long hi, long u_x, long u_y ) {
+
+        return hi + ((u_x >> 63) & u_y) + ((u_y >> 63) & u_x);
+    }
+
     static int multiplyExponents( int x, int y ) {
 
         return x + y + 64;
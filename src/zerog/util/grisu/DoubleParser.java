@@ -0,0 +1,472 @@
+package zerog.util.grisu;
+
+import static zerog.util.grisu.DiyFp.doubleMantissaSize;
+import static zerog.util.grisu.DiyFp.u_doubleHiddenBit;
+
+/*
+ * The other direction: bytes back to a double, correctly rounded the same
+ * as Double.parseDouble, but straight off the bytes and without the garbage.
+ *
+ * There are three tiers:
+ *
+ * 1. Clinger's fast path. When the digits fit in 53 bits and the power of
+ *    ten is exact in a double, a single IEEE multiply or divide is already
+ *    correctly rounded.
+ *
+ * 2. The Eisel-Lemire idea: multiply the first 19 digits by the 126 bit
+ *    power of ten Schubfach uses and look at the bits that get rounded off.
+ *    The error in that product is known and tiny, so unless those bits are
+ *    right on top of the halfway point the rounding is decided.
+ *
+ * 3. When it is too close to call, an exact comparison of the decimal
+ *    against the halfway point with big integers. The big integers live in
+ *    per thread scratch, so there is still no garbage.
+ *
+ * Anything doubleToBytes prints (at most 17 digits) only lands in the third
+ * tier about once in a thousand values.
+ */
+public class DoubleParser {
+
+    /**
+     * The most digits that always fit in an unsigned long.
+     */
+    static final int max_sig_digits = 19;
+
+    /**
+     * The exact comparison only looks at this many digits. Halfway points
+     * between doubles have at most 767 significant digits so anything past
+     * this can only matter as a tie breaker.
+     */
+    static final int max_big_digits = 768;
+
+    // enough for 5^(768 + 343) times a significand with some left over
+    private static final int big_ints = 128;
+
+    private static final long u_M32 = 0xFFFFFFFFL;
+    private static final int[] pow10_int = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000 };
+
+    /**
+     * Big integer scratch for the slow path, per thread.
+     */
+    private static class Bignums {
+        public int[] a = new int[big_ints];
+        public int[] b = new int[big_ints];
+    }
+
+    private static final ThreadLocal<Bignums> tlBignums = new ThreadLocal<Bignums>() {
+        @Override protected Bignums initialValue() {
+            return new Bignums();
+        }
+    };
+
+    /**
+     * Parses the decimal in the buffer. Takes anything {@link Grisu#doubleToBytes(byte[], int, double)}
+     * writes, with any exponent character, and the usual forms besides: a leading
+     * + or -, no integer digits (.5) or no fraction digits (5.), any number of digits,
+     * and an optional exponent (e or E). NaN and Infinity must be spelt like that.
+     * Leading or trailing whitespace isn't skipped.
+     * <p>
+     * No garbage is generated unless the input is malformed.
+     *
+     * @param buffer The bytes to read.
+     * @param boffset The first byte of the number.
+     * @param blen How many bytes the number takes.
+     * @return The closest double, ties to even.
+     * @throws NumberFormatException If the bytes aren't a number.
+     */
+    public static double parseDouble( byte[] buffer, int boffset, int blen ) {
+
+        int pos = boffset;
+        int end = boffset + blen;
+
+        boolean neg = false;
+        if( pos < end && (buffer[pos] == '-' || buffer[pos] == '+') ) {
+            neg = buffer[pos] == '-';
+            pos++;
+        }
+
+        if( pos < end && (buffer[pos] == 'N' || buffer[pos] == 'I') ) {
+
+            if( matches( buffer, pos, end, Grisu.nan_text ) )
+                return Double.NaN;
+            if( matches( buffer, pos, end, Grisu.inf_text ) )
+                return neg ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+
+            throw badNumber( buffer, boffset, blen );
+        }
+
+        int digitstart = pos;
+        long u_w = 0;
+        int ndigits = 0;
+        int exp10 = 0;
+        boolean anydigits = false;
+        boolean truncated = false;
+
+        // integer part
+        for( ; pos < end; ++pos ) {
+
+            int dig = buffer[pos] - '0';
+            if( dig < 0 || dig > 9 )
+                break;
+
+            anydigits = true;
+            if( ndigits < max_sig_digits ) {
+                if( u_w != 0 || dig != 0 ) {
+                    u_w = u_w * 10 + dig;
+                    ndigits++;
+                }
+            }
+            else {
+                exp10++;
+                truncated |= dig != 0;
+            }
+        }
+
+        // fraction part
+        if( pos < end && buffer[pos] == '.' ) {
+
+            for( ++pos; pos < end; ++pos ) {
+
+                int dig = buffer[pos] - '0';
+                if( dig < 0 || dig > 9 )
+                    break;
+
+                anydigits = true;
+                if( ndigits < max_sig_digits ) {
+                    if( u_w != 0 || dig != 0 ) {
+                        u_w = u_w * 10 + dig;
+                        ndigits++;
+                    }
+                    exp10--;
+                }
+                else {
+                    truncated |= dig != 0;
+                }
+            }
+        }
+
+        if( !anydigits )
+            throw badNumber( buffer, boffset, blen );
+
+        int digitend = pos;
+
+        // exponent part, it only has to be big enough to be silly
+        int expnum = 0;
+        if( pos < end && (buffer[pos] == 'e' || buffer[pos] == 'E') ) {
+
+            pos++;
+            boolean expneg = false;
+            if( pos < end && (buffer[pos] == '-' || buffer[pos] == '+') ) {
+                expneg = buffer[pos] == '-';
+                pos++;
+            }
+
+            if( pos == end )
+                throw badNumber( buffer, boffset, blen );
+
+            for( ; pos < end; ++pos ) {
+
+                int dig = buffer[pos] - '0';
+                if( dig < 0 || dig > 9 )
+                    break;
+
+                if( expnum < 100_000 )
+                    expnum = expnum * 10 + dig;
+            }
+
+            if( expneg )
+                expnum = -expnum;
+        }
+
+        if( pos != end )
+            throw badNumber( buffer, boffset, blen );
+
+        exp10 += expnum;
+
+        double value;
+        if( u_w == 0 ) {
+            value = 0.0;
+        }
+        else if( !truncated && u_w >>> doubleMantissaSize + 1 == 0 && exp10 >= -22 && exp10 <= 22 ) {
+            // Clinger: both exact, so one correctly rounded op
+            value = exp10 >= 0
+                    ? u_w * CachedPowers.d_pow10[exp10]
+                    : u_w / CachedPowers.d_pow10[-exp10];
+        }
+        else if( exp10 + ndigits - 1 > 308 ) {
+            value = Double.POSITIVE_INFINITY;
+        }
+        else if( exp10 + ndigits < -324 ) {
+            value = 0.0;
+        }
+        else {
+            value = Double.longBitsToDouble( u_bitsFromDecimal( u_w, exp10, truncated, buffer, digitstart, digitend, expnum ));
+        }
+
+        return neg ? -value : value;
+    }
+
+    /**
+     * The second and third tiers. The first 19 digits are normalized and
+     * multiplied by the 126 bit 10^exp10 from {@link CachedPowers#u_g1}, which
+     * is at most one unit over, keeping the top 64 bits. That is below the
+     * true value by less than one unit, or by less than 19 if there were
+     * digits that didn't fit, and more than 10 bits get rounded off, so the
+     * answer is only in doubt when those bits are that close to a half.
+     *
+     * @return The bits of the double
+     */
+    protected static long u_bitsFromDecimal( long u_w, int exp10, boolean truncated, byte[] buffer, int digitstart, int digitend, int expnum ) {
+
+        int lz = Long.numberOfLeadingZeros( u_w );
+        long u_wn = u_w << lz;
+
+        int index = -exp10 - CachedPowers.g_min_ten_exp;
+        long u_g1 = CachedPowers.u_g1[index];
+        long u_g0 = CachedPowers.u_g0[index];
+
+        // (w * (g1 * 2^63 + g0)) / 2^63 as 128 bits
+        long u_hi1 = DiyFp.u_multiplyHigh( u_wn, u_g1 );
+        long u_lo1 = u_wn * u_g1;
+        long u_hi0 = DiyFp.u_multiplyHigh( u_wn, u_g0 );
+        long u_lo0 = u_wn * u_g0;
+
+        long u_lo = u_lo1 + ((u_hi0 << 1) | (u_lo0 >>> 63));
+        long u_hi = u_hi1 + (Long.compareUnsigned( u_lo, u_lo1 ) < 0 ? 1 : 0);
+
+        // the product is 126 or 127 bits, take the top 64
+        int nz = Long.numberOfLeadingZeros( u_hi );
+        long u_top = (u_hi << nz) | (u_lo >>> 64 - nz);
+        int e2 = 2 - nz + CachedPowers.flog2pow10( exp10 ) - lz;
+
+        // where the leading bit is, and so how many bits get rounded off
+        int lead = e2 + 63;
+        if( lead > 1023 )
+            return Double.doubleToRawLongBits( Double.POSITIVE_INFINITY );
+
+        int biased;
+        int drop;
+        if( lead >= -1022 ) {
+            biased = lead + 1023;
+            drop = 63 - doubleMantissaSize;
+        }
+        else {
+            // subnormal
+            biased = 0;
+            drop = 63 - doubleMantissaSize + (-1022 - lead);
+            if( drop > 64 )
+                return 0;
+        }
+
+        long u_m = drop < 64 ? u_top >>> drop : 0;
+        long u_rem = drop < 64 ? u_top & ((1L << drop) - 1) : u_top;
+        long u_half = 1L << drop - 1;
+        long u_err = truncated ? 21 : 2;
+
+        boolean roundup;
+        if( Long.compareUnsigned( u_rem, u_half ) > 0 ) {
+            roundup = true;
+        }
+        else if( Long.compareUnsigned( u_half - u_rem, u_err ) >= 0 ) {
+            roundup = false;
+        }
+        else {
+            // too close to call
+            int cmp = compareToHalfway( buffer, digitstart, digitend, expnum, u_m, e2 + drop );
+            roundup = cmp > 0 || cmp == 0 && (u_m & 1) == 1;
+        }
+
+        if( roundup )
+            u_m++;
+
+        // a carry out of the significand bumps the exponent by itself
+        long u_bits = biased == 0 ? u_m : ((long)biased << doubleMantissaSize) + u_m - u_doubleHiddenBit;
+        if( u_bits >= Double.doubleToRawLongBits( Double.POSITIVE_INFINITY ))
+            return Double.doubleToRawLongBits( Double.POSITIVE_INFINITY );
+
+        return u_bits;
+    }
+
+    /**
+     * Compares the decimal digits exactly against the point halfway between
+     * m * 2^e and (m + 1) * 2^e.
+     *
+     * @return Negative, zero or positive like {@link Comparable}
+     */
+    protected static int compareToHalfway( byte[] buffer, int digitstart, int digitend, int expnum, long u_m, int e ) {
+
+        Bignums big = tlBignums.get();
+        int[] a = big.a;
+        int[] b = big.b;
+
+        // Read up to max_big_digits significant digits into a, 9 at a time
+        int alen = 0;
+        int taken = 0;
+        int fracdigits = 0;
+        int droppedint = 0;
+        boolean sticky = false;
+        boolean infrac = false;
+
+        int chunk = 0;
+        int chunkdigits = 0;
+
+        for( int pos = digitstart; pos < digitend; ++pos ) {
+
+            byte c = buffer[pos];
+            if( c == '.' ) {
+                infrac = true;
+                continue;
+            }
+
+            int dig = c - '0';
+            if( taken == max_big_digits ) {
+                sticky |= dig != 0;
+                if( !infrac )
+                    droppedint++;
+                continue;
+            }
+
+            if( infrac )
+                fracdigits++;
+
+            if( alen == 0 && chunkdigits == 0 && dig == 0 )
+                continue;
+
+            chunk = chunk * 10 + dig;
+            taken++;
+
+            if( ++chunkdigits == 9 ) {
+                alen = bigMulAdd( a, alen, pow10_int[9], chunk );
+                chunk = 0;
+                chunkdigits = 0;
+            }
+        }
+
+        if( chunkdigits > 0 )
+            alen = bigMulAdd( a, alen, pow10_int[chunkdigits], chunk );
+
+        int q = expnum - fracdigits + droppedint;
+
+        // b = 2m + 1 at 2^(e - 1)
+        int blen = bigSet( b, (u_m << 1) + 1 );
+        int e2 = e - 1;
+
+        // a * 10^q against b * 2^e2, get the 5s and 2s on the right sides
+        if( q >= 0 )
+            alen = bigMulPow5( a, alen, q );
+        else
+            blen = bigMulPow5( b, blen, -q );
+
+        int diff = q - e2;
+        if( diff >= 0 )
+            alen = bigShiftLeft( a, alen, diff );
+        else
+            blen = bigShiftLeft( b, blen, -diff );
+
+        int cmp = bigCompare( a, alen, b, blen );
+
+        // digits past the ones read can only make it bigger
+        if( cmp == 0 && sticky )
+            cmp = 1;
+
+        return cmp;
+    }
+
+    // From here on down is just enough of a big integer for the above. They
+    // are little endian unsigned ints and the lengths are passed around.
+
+    static int bigSet( int[] x, long u_v ) {
+
+        x[0] = (int)u_v;
+        x[1] = (int)(u_v >>> 32);
+
+        return x[1] != 0 ? 2 : x[0] != 0 ? 1 : 0;
+    }
+
+    static int bigMulAdd( int[] x, int len, int m, int a ) {
+
+        long u_carry = a & u_M32;
+        for( int i = 0; i < len; ++i ) {
+            long u_p = (x[i] & u_M32) * m + u_carry;
+            x[i] = (int)u_p;
+            u_carry = u_p >>> 32;
+        }
+
+        if( u_carry != 0 )
+            x[len++] = (int)u_carry;
+
+        return len;
+    }
+
+    static int bigMulPow5( int[] x, int len, int n ) {
+
+        // 5^13 is the biggest that fits in an int
+        for( ; n >= 13; n -= 13 )
+            len = bigMulAdd( x, len, 1_220_703_125, 0 );
+
+        if( n > 0 )
+            len = bigMulAdd( x, len, (int)CachedPowers.u_pow5[n], 0 );
+
+        return len;
+    }
+
+    static int bigShiftLeft( int[] x, int len, int n ) {
+
+        if( len == 0 )
+            return 0;
+
+        int words = n >>> 5;
+        int bits = n & 31;
+
+        if( bits == 0 ) {
+            System.arraycopy( x, 0, x, words, len );
+        }
+        else {
+            x[len + words] = x[len - 1] >>> 32 - bits;
+            for( int i = len - 1; i > 0; --i )
+                x[i + words] = (x[i] << bits) | (x[i - 1] >>> 32 - bits);
+            x[words] = x[0] << bits;
+            len++;
+        }
+
+        for( int i = 0; i < words; ++i )
+            x[i] = 0;
+
+        len += words;
+        while( len > 0 && x[len - 1] == 0 )
+            len--;
+
+        return len;
+    }
+
+    static int bigCompare( int[] x, int xlen, int[] y, int ylen ) {
+
+        if( xlen != ylen )
+            return xlen < ylen ? -1 : 1;
+
+        for( int i = xlen - 1; i >= 0; --i ) {
+            if( x[i] != y[i] )
+                return Integer.compareUnsigned( x[i], y[i] );
+        }
+
+        return 0;
+    }
+
+    private static boolean matches( byte[] buffer, int pos, int end, byte[] text ) {
+
+        if( end - pos != text.length )
+            return false;
+
+        for( int i = 0; i < text.length; ++i ) {
+            if( buffer[pos + i] != text[i] )
+                return false;
+        }
+
+        return true;
+    }
+
+    private static NumberFormatException badNumber( byte[] buffer, int boffset, int blen ) {
+
+        return new NumberFormatException( "For input string: \"" + new String( buffer, boffset, blen ) + "\"" );
+    }
+}
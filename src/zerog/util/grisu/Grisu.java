@@ -2,12 +2,22 @@ package zerog.util.grisu;
 
 import static zerog.util.grisu.DiyFp.doubleExponentBias;
 import static zerog.util.grisu.DiyFp.doubleMantissaSize;
+import static zerog.util.grisu.DiyFp.floatExponentBias;
+import static zerog.util.grisu.DiyFp.floatMantissaSize;
 import static zerog.util.grisu.DiyFp.u_doubleExponentMask;
 import static zerog.util.grisu.DiyFp.u_doubleHiddenBit;
 import static zerog.util.grisu.DiyFp.u_doubleMantissaMask;
+import static zerog.util.grisu.DiyFp.u_floatExponentMask;
+import static zerog.util.grisu.DiyFp.u_floatHiddenBit;
+import static zerog.util.grisu.DiyFp.u_floatMantissaMask;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-// TODO: add rounding to number of decimals
-// TODO: add fast path for small precision numbers
 public class Grisu {
 
     /**
@@ -16,11 +26,51 @@ public class Grisu {
      */
     public static final Grisu fmt = new Grisu( 16, 10, 'e' );
 
+    /**
+     * The default formatter settings, but always printing the shortest digits
+     * that round trip.
+     */
+    public static final Grisu shortest_fmt = new Grisu( 16, 10, 'e', Engine.SHORTEST );
+
+    /**
+     * How the digits are generated when a value isn't caught by one of the
+     * fast paths.
+     */
+    public enum Engine {
+
+        /**
+         * Loitsch's Grisu2: shortest about 99.8% of the time, otherwise a
+         * digit or two longer. The window isn't narrowed for the error in the
+         * cached power, so on the order of 1 in 10^4 arbitrary bit patterns
+         * print a last digit that is one off and won't round trip.
+         */
+        GRISU2,
+
+        /**
+         * Giulietti's Schubfach: always the shortest that round trips, and
+         * the closest of those. Without Double.toString's 2 digit minimum,
+         * so the smallest subnormals can be a digit shorter (5e-323, not
+         * 4.9e-323). The wider multiplies are paid back by not needing the
+         * digit loop, so it is no slower than Grisu2.
+         */
+        SHORTEST
+    }
+
     // NOTE: get rid of these and pass them into the method? Or maybe passing
     // them in should override these?
     public final int max_int_digits;
     public final int max_frac_digits;
     public final byte exp_char;
+    public final Engine engine;
+
+    /**
+     * The longest output of {@link #doubleToBytes(byte[], int, double)} with
+     * this formatter's layout. It is {@value #longest_double_output} unless
+     * {@code max_int_digits} or {@code max_frac_digits} let runs of zeros into
+     * plain notation, at most 309 integer digits for 1e308 and 341 fraction
+     * digits for 17 digits down at 1e-324, plus the sign and "0." or ".0".
+     */
+    public final int longest_output;
 
     /**
      * Grisu2 is capable of printing out {@value #max_grisu_precision} digits
@@ -36,23 +86,79 @@ public class Grisu {
      */
     public static final int longest_double_output = max_grisu_precision + 1 + 1 + 5;
 
+    /**
+     * The longest output of {@link #longToBytes(byte[], int, long)}: {@value #longest_long_output},
+     * for {@link Long#MIN_VALUE}. The unsigned longs are no longer.
+     */
+    public static final int longest_long_output = 20;
+
+    /**
+     * The longest output of {@link #decimalToBytes(byte[], int, long, int, boolean)}:
+     * {@value #longest_decimal_output}. That is 19 digits, plus 1 for the minus
+     * sign, plus 1 for the decimal point, plus 5 for the exponent.
+     */
+    public static final int longest_decimal_output = 19 + 1 + 1 + 5;
+
+    /**
+     * The widest scale of {@link #decimalToBytes(byte[], int, long, int, boolean)},
+     * so the exponent is never more than 3 digits.
+     */
+    public static final int max_decimal_scale = 980;
+
+    /**
+     * The longest plain notation output of {@link #doubleToBytesFixed(byte[], int, double, int)}
+     * not counting the fraction digits: {@value #longest_fixed_output}. That is
+     * 309 integer digits for {@link Double#MAX_VALUE}, plus 1 for the minus sign,
+     * plus 1 for the decimal point.
+     */
+    public static final int longest_fixed_output = 309 + 1 + 1;
+
+    /**
+     * Binary exponent range of {@link #u_lowprecpath(byte[], int, double, int)}:
+     * anything bigger is an integer and taken by {@link #u_quickpath(byte[], int, long, int)},
+     * anything smaller needs a power of ten past 10^22, the last one exact in a double.
+     */
+    static final int lowprec_max_2exp = 49;
+    static final int lowprec_min_2exp = -27;
+
     protected static final byte[] nan_text = "NaN".getBytes();
     protected static final byte[] inf_text = "Infinity".getBytes();
     protected static final byte[] zero_text = "0.0".getBytes();
     
     /**
-     * ByteArray holder for per thread scratch space
+     * ByteArray holder for per thread scratch space, sized to the formatter's
+     * {@link #longest_output}. It is also a view of the first {@code len}
+     * bytes as chars so a {@link StringBuilder} can take them in one bulk
+     * append.
      */
-    private static class ByteArray {
-        public byte[] buffer = new byte[longest_double_output];
-        public char[] charb = new char[longest_double_output];
+    private static class ByteArray implements CharSequence {
+        public byte[] buffer;
+        public char[] charb;
+        public int len;
+
+        ByteArray( int size ) {
+            buffer = new byte[size];
+            charb = new char[size];
+        }
+
+        @Override public int length() { return len; }
+        @Override public char charAt( int index ) { return (char)buffer[index]; }
+        @Override public CharSequence subSequence( int start, int end ) { return toString().substring( start, end ); }
+        @Override public String toString() { return new String( buffer, 0, len, StandardCharsets.ISO_8859_1 ); }
     }
     
     private ThreadLocal<ByteArray> tlBuffers = new ThreadLocal<ByteArray>() {
         @Override protected ByteArray initialValue() {
-            return new ByteArray();
+            return new ByteArray( longest_output );
         }
     };
+
+    // Scratch for doubleToStringStateless, shared by every formatter and
+    // striped by thread so carriers rarely meet on a slot. A caller takes a
+    // slot's array with getAndSet and puts it back after, so an array is
+    // only ever in one thread's hands.
+    private static final int scratch_slots = Integer.highestOneBit( Runtime.getRuntime().availableProcessors() * 4 );
+    private static final AtomicReferenceArray<byte[]> scratch_pool = new AtomicReferenceArray<>( scratch_slots );
     
     /**
      * Create a formatter with a set of defaults.
@@ -63,15 +169,33 @@ public class Grisu {
      */
     public Grisu( int max_int_digits, int max_frac_digits, char exp_char ) {
 
+        this( max_int_digits, max_frac_digits, exp_char, Engine.GRISU2 );
+    }
+
+    /**
+     * Create a formatter with a set of defaults and a choice of digit engine.
+     * 
+     * @param max_int_digits
+     * @param max_frac_digits
+     * @param exp_char
+     * @param engine
+     */
+    public Grisu( int max_int_digits, int max_frac_digits, char exp_char, Engine engine ) {
+
         this.max_int_digits = max_int_digits;
         this.max_frac_digits = max_frac_digits;
         this.exp_char = (byte)exp_char;
+        this.engine = engine;
+        this.longest_output = Math.max( longest_double_output,
+                1 + 2 + Math.max( Math.min( max_int_digits, 309 ), Math.min( max_frac_digits, 341 )));
     }
 
     /**
      * Prints the double floating point value into a {@link #String}. Underneath it
-     * calls {@link #doubleToBytes(byte[], int, double)} with a newly allocated
-     * temporary buffer and then news off a String from that.
+     * calls {@link #doubleToBytes(byte[], int, double)} with a per thread
+     * temporary buffer and then news off a String from that. The output is
+     * all ASCII, so the String is made straight from the bytes as Latin-1,
+     * which compact strings just copy.
      * 
      * @param value The double value
      * @return The printed representation
@@ -81,9 +205,168 @@ public class Grisu {
         ByteArray buf = tlBuffers.get();
         int len = doubleToBytes( buf.buffer, 0, value );
         
-        return new String( toChars( buf, len ), 0, len );
+        return new String( buf.buffer, 0, len, StandardCharsets.ISO_8859_1 );
+    }
+
+    /**
+     * {@link #doubleToString(double)} with the caller's scratch instead of the
+     * per thread one, for a caller that already has a buffer at hand or runs
+     * on threads that live for only a call or two.
+     *
+     * @param value The double value
+     * @param scratch At least {@link #longest_output} bytes
+     * @return The printed representation
+     */
+    public String doubleToString( double value, byte[] scratch ) {
+
+        int len = doubleToBytes( scratch, 0, value );
+
+        return new String( scratch, 0, len, StandardCharsets.ISO_8859_1 );
+    }
+
+    /**
+     * {@link #doubleToString(double)} with no per thread state at all, for
+     * virtual threads where every thread would otherwise get its own
+     * ThreadLocal scratch and the lookup to find it. The digits go into
+     * scratch borrowed from a small pool shared by all threads, a few
+     * arrays per processor, with one atomic swap to take it and one store to
+     * give it back. The only garbage is the String.
+     * <p>
+     * When two threads land on the same slot at once the second allocates a
+     * fresh scratch array for that call, so under heavy contention some
+     * calls make {@link #longest_output} bytes of garbage more. So does a
+     * wide formatter's first call on a slot last used by a narrower one,
+     * after which the slot keeps the wider array.
+     *
+     * @param value The double value
+     * @return The printed representation
+     */
+    public String doubleToStringStateless( double value ) {
+
+        int slot = System.identityHashCode( Thread.currentThread() ) & (scratch_slots - 1);
+        byte[] scratch = scratch_pool.getAndSet( slot, null );
+        if( scratch == null || scratch.length < longest_output )
+            scratch = new byte[longest_output]; // first use, taken, or too narrow
+
+        int len = doubleToBytes( scratch, 0, value );
+        String s = new String( scratch, 0, len, StandardCharsets.ISO_8859_1 );
+
+        scratch_pool.lazySet( slot, scratch );
+        return s;
+    }
+
+    /**
+     * Prints the double onto the end of the builder, the same text as
+     * {@link #doubleToString(double)} without the String in between. The
+     * bytes are widened once, by the builder as it appends them.
+     * 
+     * @param sb Where to append
+     * @param value The double value
+     * @return The builder
+     */
+    public StringBuilder appendDouble( StringBuilder sb, double value ) {
+
+        ByteArray buf = tlBuffers.get();
+        buf.len = doubleToBytes( buf.buffer, 0, value );
+
+        return sb.append( buf, 0, buf.len );
+    }
+
+    /**
+     * Prints the double onto the end of anything that takes chars. Builders
+     * take it in bulk and {@link Writer}s get one char array write, anything
+     * else gets the chars one at a time since the general
+     * {@link Appendable#append(CharSequence, int, int)} is free to allocate
+     * and most do.
+     * 
+     * @param a Where to append
+     * @param value The double value
+     * @return The appendable
+     * @throws IOException From the appendable
+     */
+    public Appendable appendDouble( Appendable a, double value ) throws IOException {
+
+        ByteArray buf = tlBuffers.get();
+        int len = buf.len = doubleToBytes( buf.buffer, 0, value );
+
+        if( a instanceof StringBuilder )
+            ((StringBuilder)a).append( buf, 0, len );
+        else if( a instanceof StringBuffer )
+            ((StringBuffer)a).append( buf, 0, len );
+        else if( a instanceof Writer )
+            ((Writer)a).write( toChars( buf, len ), 0, len );
+        else
+            for( int i = 0; i < len; ++i )
+                a.append( (char)buf.buffer[i] );
+
+        return a;
     }
     
+    /**
+     * Prints the double at the buffer's position and moves the position past
+     * it, like the relative {@code put} methods. If the buffer is backed by an
+     * array and has room for the longest output the digits go straight into
+     * the array, otherwise they are printed into per thread scratch and put
+     * in one bulk copy.
+     * <p>
+     * For off heap memory in a {@code MemorySegment} use its {@code asByteBuffer()}
+     * view.
+     * 
+     * @param buffer A heap or direct buffer
+     * @param value The double value
+     * @return The number of bytes written
+     * @throws BufferOverflowException If the text doesn't fit before the limit
+     */
+    public int doubleToBytes( ByteBuffer buffer, double value ) {
+
+        if( buffer.hasArray() && buffer.remaining() >= longest_output ) {
+
+            int len = doubleToBytes( buffer.array(), buffer.arrayOffset() + buffer.position(), value );
+            buffer.position( buffer.position() + len );
+
+            return len;
+        }
+
+        ByteArray buf = tlBuffers.get();
+        int len = doubleToBytes( buf.buffer, 0, value );
+        buffer.put( buf.buffer, 0, len );
+
+        return len;
+    }
+
+    /**
+     * Prints the double into the buffer at the index without touching its
+     * position, the same contract as {@link #doubleToBytes(byte[], int, double)}.
+     * See {@link #doubleToBytes(ByteBuffer, double)}.
+     * 
+     * @param buffer A heap or direct buffer
+     * @param bindex Where to begin writing.
+     * @param value The double value
+     * @return The number of bytes written
+     * @throws IndexOutOfBoundsException If the text doesn't fit before the limit
+     */
+    public int doubleToBytes( ByteBuffer buffer, int bindex, double value ) {
+
+        // before the fast path, a slice's array goes on before its region
+        if( bindex < 0 )
+            throw new IndexOutOfBoundsException();
+
+        if( buffer.hasArray() && buffer.limit() - bindex >= longest_output )
+            return doubleToBytes( buffer.array(), buffer.arrayOffset() + bindex, value );
+
+        ByteArray buf = tlBuffers.get();
+        int len = doubleToBytes( buf.buffer, 0, value );
+
+        if( buffer.limit() - bindex < len )
+            throw new IndexOutOfBoundsException();
+
+        // No absolute bulk put until Java 16
+        for( int i = 0; i < len; ++i )
+            buffer.put( bindex + i, buf.buffer[i] );
+
+        return len;
+    }
+
     protected static char[] toChars( ByteArray buf, int len ) {
         
         for( int i = 0; i < len; ++i )
@@ -103,7 +386,7 @@ public class Grisu {
      * <p>
      * No garbage is generate in the call.
      * 
-     * @param buffer A buffer that has at least {@value #longest_double_output}
+     * @param buffer A buffer that has at least {@link #longest_output}
      * more bytes allocated. This isn't checked so you can get away with less,
      * if you are sure if will fit.
      * 
@@ -121,23 +404,8 @@ public class Grisu {
         // all ones in the exponent means this is special.
         // Get the special cases out of the way: NaN, infinities, zero(s)
         if( ve == (int) (u_doubleExponentMask >>> doubleMantissaSize) ) {
-
-            if( u_vf != 0 ) {
-
-                System.arraycopy( nan_text, 0, buffer, boffset, nan_text.length );
-                return nan_text.length;
-            }
-            else if( visneg ) {
-
-                buffer[boffset] = '-';
-                System.arraycopy( inf_text, 0, buffer, boffset + 1, inf_text.length );
-                return 1 + inf_text.length;
-            }
-            else {
-
-                System.arraycopy( inf_text, 0, buffer, boffset, inf_text.length );
-                return inf_text.length;
-            }
+            digitsPath( path_special );
+            return printNonFinite( buffer, boffset, visneg, u_vf );
         }
 
         // denormalize normals and fix exponent bias
@@ -151,6 +419,7 @@ public class Grisu {
             if( u_vf == 0 ) {
                 
                 // NOTE: Should I bother with +/-0.0 distinctions?
+                digitsPath( path_special );
                 System.arraycopy( zero_text, 0, buffer, boffset, zero_text.length );
                 return zero_text.length;
             }
@@ -166,14 +435,425 @@ public class Grisu {
             pos = 1;
         }
                 
-        long u_lenpow = u_quickpath( buffer, boffset + pos, u_vf, ve );
-        if( u_lenpow == 0 )
-            u_lenpow = u_grisu2( buffer, boffset + pos, u_vf, ve );
+        long u_lenpow = u_digits( buffer, boffset + pos, value, u_vf, ve );
         
         return pos + formatBuffer( buffer, boffset + pos, StuffedPair.car( u_lenpow ), StuffedPair.cdr( u_lenpow ));
     }
     
-    static int qps = 0;
+    /**
+     * Prints {@code src[from]} up to but not including {@code src[to]} into the
+     * buffer, with the separator after each one but the last. It stops early
+     * when there is less than {@link #longest_output} plus one bytes
+     * left in the buffer, and the returned index says where to pick it up
+     * again. Since the separator goes after a value, a large array can be
+     * streamed out a buffer at a time just by calling again from there:
+     * <pre>
+     * for( int i = 0; i &lt; src.length; ) {
+     *     long res = fmt.formatArray( src, i, src.length, (byte)',', buf, 0 );
+     *     out.write( buf, 0, StuffedPair.car( res ));
+     *     i = StuffedPair.cdr( res );
+     * }
+     * </pre>
+     * No garbage is generate in the call.
+     * 
+     * @param src The values
+     * @param from The first index to print
+     * @param to One past the last index to print
+     * @param separator Written between the values
+     * @param buffer Where to write
+     * @param boffset Where to begin writing
+     * @return The bytes written and the next index to print, as a {@link StuffedPair}.
+     * The index is {@code to} when everything was written.
+     */
+    public long formatArray( double[] src, int from, int to, byte separator, byte[] buffer, int boffset ) {
+
+        int pos = boffset;
+        int last = to - 1;
+        int stop = buffer.length - longest_output - 1;
+        int i = from;
+
+        for( ; i < last && pos <= stop; ++i ) {
+
+            pos += doubleToBytes( buffer, pos, src[i] );
+            buffer[pos++] = separator;
+        }
+
+        if( i == last && pos <= stop ) {
+
+            pos += doubleToBytes( buffer, pos, src[i] );
+            i++;
+        }
+
+        return StuffedPair.cons( pos - boffset, i );
+    }
+
+    /**
+     * Prints every digit of the long, with a minus sign when negative, eg
+     * -9223372036854775808. Unlike the doubles there is never a fraction or
+     * an exponent.
+     * <p>
+     * No garbage is generate in the call.
+     * 
+     * @param buffer A buffer with at least {@value #longest_long_output} bytes available
+     * @param boffset Where to begin writing.
+     * @param value The long value
+     * @return The number of bytes written
+     */
+    public static int longToBytes( byte[] buffer, int boffset, long value ) {
+
+        if( value >= 0 )
+            return u_printLongExact( buffer, boffset, value );
+
+        // -Long.MIN_VALUE is itself, which is right as unsigned
+        buffer[boffset] = '-';
+        return 1 + u_printLongExact( buffer, boffset + 1, -value );
+    }
+
+    /**
+     * Prints the long as unsigned, 0 to 18446744073709551615.
+     * 
+     * @see #longToBytes(byte[], int, long)
+     */
+    public static int unsignedLongToBytes( byte[] buffer, int boffset, long u_value ) {
+
+        return u_printLongExact( buffer, boffset, u_value );
+    }
+
+    /**
+     * Prints every digit of the int, with a minus sign when negative.
+     * 
+     * @see #longToBytes(byte[], int, long)
+     */
+    public static int intToBytes( byte[] buffer, int boffset, int value ) {
+
+        return longToBytes( buffer, boffset, value );
+    }
+
+    /**
+     * Prints the int as unsigned, 0 to 4294967295.
+     * 
+     * @see #longToBytes(byte[], int, long)
+     */
+    public static int unsignedIntToBytes( byte[] buffer, int boffset, int u_value ) {
+
+        return u_printLongExact( buffer, boffset, u_value & 0xffff_ffffL );
+    }
+
+    /**
+     * Prints the fixed-point decimal {@code unscaled * 10^-scale}, the way
+     * {@link java.math.BigDecimal#valueOf(long, int)} holds it, eg 12345 with
+     * scale 2 is 123.45. All the digits are kept, so 150 with scale 2 is 1.50.
+     * 
+     * @see #decimalToBytes(byte[], int, long, int, boolean)
+     */
+    public int decimalToBytes( byte[] buffer, int boffset, long unscaled, int scale ) {
+
+        return decimalToBytes( buffer, boffset, unscaled, scale, false );
+    }
+
+    /**
+     * Prints the fixed-point decimal {@code unscaled * 10^-scale} without
+     * going through a double. The digits come straight from the long and are
+     * laid out with the {@code max_int_digits}, {@code max_frac_digits} and
+     * {@code exp_char} rules of {@link #doubleToBytes(byte[], int, double)},
+     * so whole values still end in .0 and those out of range go exponential.
+     * <p>
+     * No garbage is generate in the call.
+     * 
+     * @param buffer A buffer with at least {@value #longest_decimal_output}
+     * bytes available, as long as {@code max_int_digits} and {@code max_frac_digits}
+     * are under {@value #longest_decimal_output} less 3.
+     * @param boffset Where to begin writing.
+     * @param unscaled The digits, with their sign
+     * @param scale How many of them are after the decimal point, negative to
+     * multiply by a power of ten, at most {@value #max_decimal_scale} either way
+     * @param strip_zeros Drop the trailing zeros of the fraction, 1.50 is 1.5 and 1.00 is 1.0
+     * @return The number of bytes written
+     */
+    public int decimalToBytes( byte[] buffer, int boffset, long unscaled, int scale, boolean strip_zeros ) {
+
+        if( scale > max_decimal_scale || scale < -max_decimal_scale )
+            throw new IllegalArgumentException( "scale out of range: " + scale );
+
+        int pos = 0;
+        long u_v = unscaled;
+        if( unscaled < 0 ) {
+
+            buffer[boffset] = '-';
+            pos = 1;
+            u_v = -unscaled;
+        }
+
+        int ndigits = CachedPowers.numUnsignedLongDigits( u_v );
+        u_writeDigits( buffer, boffset + pos, u_v, ndigits );
+
+        int exp = -scale;
+        if( u_v == 0 ) {
+            // 0.00 stays as it is unless stripped, but there are no zeros to extend
+            if( strip_zeros || exp > 0 )
+                exp = 0;
+        }
+        else if( strip_zeros ) {
+            for( ; exp < 0 && buffer[boffset + pos + ndigits - 1] == '0'; --ndigits )
+                exp++;
+        }
+
+        return pos + formatBuffer( buffer, boffset + pos, ndigits, exp );
+    }
+
+    /**
+     * Prints the float into a {@link String}. See {@link #floatToBytes(byte[], int, float)}.
+     * 
+     * @param value The float value
+     * @return The printed representation
+     */
+    public String floatToString( float value ) {
+
+        ByteArray buf = tlBuffers.get();
+        int len = floatToBytes( buf.buffer, 0, value );
+
+        return new String( buf.buffer, 0, len, StandardCharsets.ISO_8859_1 );
+    }
+
+    /**
+     * {@link #floatToString(float)} with the caller's scratch, see
+     * {@link #doubleToString(double, byte[])}.
+     *
+     * @param value The float value
+     * @param scratch At least {@link #longest_output} bytes
+     * @return The printed representation
+     */
+    public String floatToString( float value, byte[] scratch ) {
+
+        int len = floatToBytes( scratch, 0, value );
+
+        return new String( scratch, 0, len, StandardCharsets.ISO_8859_1 );
+    }
+
+    /**
+     * Prints the float with the shortest digits that round trip back to the
+     * same float, eg 0.1f is 0.1 and not the 0.10000000149011612 you get from
+     * widening it to a double first. The layout follows the same
+     * {@code max_int_digits}, {@code max_frac_digits} and {@code exp_char}
+     * rules as {@link #doubleToBytes(byte[], int, double)}. The {@code engine}
+     * doesn't matter, floats are always shortest.
+     * <p>
+     * No garbage is generate in the call.
+     * 
+     * @param buffer A buffer that has at least {@link #longest_output}
+     * more bytes allocated.
+     * @param boffset Where to begin writing.
+     * @param value The float value
+     * @return The number of bytes written
+     */
+    public int floatToBytes( byte[] buffer, int boffset, float value ) {
+
+        int u_vbits = Float.floatToRawIntBits( value );
+
+        boolean visneg = u_vbits < 0;
+        int ve = (u_vbits & u_floatExponentMask) >>> floatMantissaSize;
+        int u_vf = u_vbits & u_floatMantissaMask;
+
+        if( ve == u_floatExponentMask >>> floatMantissaSize )
+            return printNonFinite( buffer, boffset, visneg, u_vf );
+
+        if( ve != 0 ) {
+            u_vf |= u_floatHiddenBit;
+            ve -= floatExponentBias;
+        }
+        else {
+            if( u_vf == 0 ) {
+
+                System.arraycopy( zero_text, 0, buffer, boffset, zero_text.length );
+                return zero_text.length;
+            }
+
+            ve = 1 - floatExponentBias;
+        }
+
+        int pos = 0;
+        if( visneg ) {
+
+            buffer[boffset + pos] = '-';
+            pos = 1;
+        }
+
+        long u_lenpow;
+        if( ve <= 0 && ve > -floatMantissaSize - 1 && (u_vf & ((1 << -ve) - 1)) == 0 ) {
+            // an integer under 2^24, all its digits are needed
+            u_lenpow = StuffedPair.cons( u_printInt( buffer, boffset + pos, u_vf >>> -ve ), 0 );
+        }
+        else {
+            u_lenpow = Schubfach.u_shortestFloat( buffer, boffset + pos, u_vf, ve );
+        }
+
+        return pos + formatBuffer( buffer, boffset + pos, StuffedPair.car( u_lenpow ), StuffedPair.cdr( u_lenpow ));
+    }
+
+    /**
+     * Prints the double rounded to exactly {@code decimals} fractional digits
+     * into a {@link String}, the same as {@code String.format("%.Nf", value)}
+     * but without the formatter machinery. See
+     * {@link #doubleToBytesFixed(byte[], int, double, int)}.
+     * 
+     * @param value The double value
+     * @param decimals The number of digits after the decimal point
+     * @return The printed representation
+     */
+    public String doubleToStringFixed( double value, int decimals ) {
+
+        ByteArray buf = tlBuffers.get();
+        if( buf.buffer.length < longest_fixed_output + decimals ) {
+            // grows once per thread to the widest precision asked for
+            buf.buffer = new byte[longest_fixed_output + decimals];
+        }
+
+        int len = doubleToBytesFixed( buf.buffer, 0, value, decimals );
+
+        return new String( buf.buffer, 0, len, StandardCharsets.ISO_8859_1 );
+    }
+
+    /**
+     * Prints the double in plain (never exponential) notation with exactly
+     * {@code decimals} digits after the decimal point, eg 1.5 with 3 decimals
+     * is 1.500 and 0.125 with 2 decimals is 0.13. With zero decimals no
+     * decimal point is written.
+     * <p>
+     * Rounding is half-up on the shortest digits that round trip, whatever
+     * the engine, which is the rule {@code String.format("%.Nf")} applies to
+     * the {@link Double#toString} digits. That is not correct rounding of
+     * the exact binary value: 2.675 is really 2.67499999... and a correctly
+     * rounded 2 decimals would be 2.67, but this gives 2.68 like
+     * String.format does. Negative values keep their sign even when they
+     * round to zero, so -0.0 is -0.00. The {@code max_int_digits},
+     * {@code max_frac_digits} and {@code exp_char} settings are ignored in
+     * this mode.
+     * <p>
+     * No garbage is generate in the call.
+     * 
+     * @param buffer A buffer with at least {@value #longest_fixed_output}
+     * plus {@code decimals} bytes available. Values under 1e16 will fit in
+     * {@value #longest_double_output} plus {@code decimals}.
+     * @param boffset Where to begin writing.
+     * @param value The double value
+     * @param decimals The number of digits after the decimal point, at least 0
+     * @return The number of bytes written
+     */
+    public int doubleToBytesFixed( byte[] buffer, int boffset, double value, int decimals ) {
+
+        assert decimals >= 0;
+
+        long u_vbits = Double.doubleToRawLongBits( value );
+
+        boolean visneg = (u_vbits >>> 63) == 1;
+        int ve = (int)((u_vbits & u_doubleExponentMask) >>> doubleMantissaSize);
+        long u_vf = u_vbits & u_doubleMantissaMask;
+
+        if( ve == (int) (u_doubleExponentMask >>> doubleMantissaSize) ) {
+            digitsPath( path_special );
+            return printNonFinite( buffer, boffset, visneg, u_vf );
+        }
+
+        int pos = 0;
+        if( visneg ) {
+
+            buffer[boffset + pos] = '-';
+            pos = 1;
+        }
+
+        if( ve != 0 ) {
+            u_vf |= u_doubleHiddenBit;
+            ve -= doubleExponentBias;
+        }
+        else {
+            if( u_vf == 0 ) {
+                digitsPath( path_special );
+                return pos + formatFixed( buffer, boffset + pos, 0, 0, decimals );
+            }
+
+            ve =  1 - doubleExponentBias;
+        }
+
+        // Grisu2's odd longer or off by one digits would be rounded a second
+        // time, so always start from the shortest
+        long u_lenpow = u_digits( buffer, boffset + pos, value, u_vf, ve, Engine.SHORTEST );
+
+        return pos + formatFixed( buffer, boffset + pos, StuffedPair.car( u_lenpow ), StuffedPair.cdr( u_lenpow ), decimals );
+    }
+
+    protected static int printNonFinite( byte[] buffer, int boffset, boolean visneg, long u_vf ) {
+
+        if( u_vf != 0 ) {
+
+            System.arraycopy( nan_text, 0, buffer, boffset, nan_text.length );
+            return nan_text.length;
+        }
+        else if( visneg ) {
+
+            buffer[boffset] = '-';
+            System.arraycopy( inf_text, 0, buffer, boffset + 1, inf_text.length );
+            return 1 + inf_text.length;
+        }
+        else {
+
+            System.arraycopy( inf_text, 0, buffer, boffset, inf_text.length );
+            return inf_text.length;
+        }
+    }
+
+    /**
+     * Runs the fast paths then the engine's digit generation.
+     * 
+     * @return The digit count and base 10 exponent as a {@link StuffedPair}
+     */
+    protected long u_digits( byte[] buffer, int boffset, double value, long u_vf, int ve ) {
+
+        return u_digits( buffer, boffset, value, u_vf, ve, engine );
+    }
+
+    /**
+     * The same with the engine given, so fixed mode can always have the
+     * shortest digits. Reports the path taken to {@link #digitsPath(int)}.
+     */
+    protected long u_digits( byte[] buffer, int boffset, double value, long u_vf, int ve, Engine engine ) {
+
+        // Integers past 2^53 have more digits than they need; the quickpath
+        // prints them all (rounded to 17), so for the shortest leave those
+        // to the engine.
+        long u_lenpow = engine == Engine.GRISU2 || ve <= 0 ? u_quickpath( buffer, boffset, u_vf, ve ) : 0;
+        if( u_lenpow != 0 ) {
+            digitsPath( path_quick );
+            return u_lenpow;
+        }
+
+        u_lenpow = u_lowprecpath( buffer, boffset, value, ve );
+        if( u_lenpow != 0 ) {
+            digitsPath( path_lowprec );
+            return u_lenpow;
+        }
+
+        digitsPath( path_engine );
+        return engine == Engine.GRISU2 ? u_grisu2( buffer, boffset, u_vf, ve ) : Schubfach.u_shortest( buffer, boffset, u_vf, ve );
+    }
+
+    /**
+     * The paths {@link #u_digits(byte[], int, double, long, int, Engine)} reports,
+     * and the NaN, infinities and zeros that the double entry points print
+     * without digits.
+     */
+    protected static final int path_quick = 0;
+    protected static final int path_lowprec = 1;
+    protected static final int path_engine = 2;
+    protected static final int path_special = 3;
+
+    /**
+     * Told which path printed the digits of each double, in both the
+     * shortest and the fixed layouts. Nothing here, so until a subclass that
+     * counts is loaded the JIT drops the call.
+     */
+    protected void digitsPath( int path ) {
+    }
+
     protected static long u_quickpath( byte[] buffer, int boffset, long u_vf, int ve ) {
         
         int leadingzeros = Long.numberOfLeadingZeros( u_vf );
@@ -196,6 +876,55 @@ public class Grisu {
         return 0;
     }
     
+    /**
+     * Catches values that are the closest double to a short decimal, like 12.345
+     * or 0.0075. The value is scaled by the largest power of ten that keeps it
+     * under 2^50 and rounded to an integer. Dividing back is a single correctly
+     * rounded IEEE op since both sides are exact, so if that gives the value
+     * again the integer (less its trailing zeros) is the decimal. Staying under
+     * 2^50 keeps the rounding error below half, so a decimal of up to 14 digits
+     * is never missed, and there is only ever one of those per double, so it is
+     * also the shortest.
+     * 
+     * @return The digit count and base 10 exponent, or 0 if it didn't apply
+     */
+    protected static long u_lowprecpath( byte[] buffer, int boffset, double value, int ve ) {
+
+        // value is in [2^b, 2^(b+1)) and 10^k * 2^(b+1) <= 2^50
+        int b = ve + doubleMantissaSize;
+        if( b > lowprec_max_2exp || b < lowprec_min_2exp )
+            return 0;
+
+        int k = ((lowprec_max_2exp - b) * 78913) >>> 18; // floor(x * log10(2))
+        double pow10 = CachedPowers.d_pow10[k];
+        double av = Math.abs( value );
+
+        long u_scaled = (long)Math.rint( av * pow10 );
+        if( u_scaled / pow10 != av )
+            return 0;
+
+        // strip the zeros the scaling put on, at most 15 of them
+        if( u_scaled % 100_000_000L == 0 ) {
+            u_scaled /= 100_000_000L;
+            k -= 8;
+        }
+        if( u_scaled % 10_000L == 0 ) {
+            u_scaled /= 10_000L;
+            k -= 4;
+        }
+        if( u_scaled % 100L == 0 ) {
+            u_scaled /= 100L;
+            k -= 2;
+        }
+        if( u_scaled % 10L == 0 ) {
+            u_scaled /= 10L;
+            k -= 1;
+        }
+
+        int ndigits = StuffedPair.car( u_printLong( buffer, boffset, u_scaled ) );
+        return StuffedPair.cons( ndigits, -k );
+    }
+
     protected static long u_printLong( byte[] buffer, int boffset, long u_vinteger ) {
         
         assert u_vinteger != 0;
@@ -213,20 +942,124 @@ public class Grisu {
 			}
 		}
 
-        for( int i = 0; i < ndigits; ++i ) {
-            
-            // NOTE: Long.remainderUnsigned() uses BigInteger
-            long u_vinteger_div10 = (u_vinteger >>> 1) / 5;
-            int u_vinteger_mod10 = (int)(u_vinteger - u_vinteger_div10 * 10);
-            
-            buffer[boffset + ndigits - i - 1] = (byte)('0' + u_vinteger_mod10);
-            
-            u_vinteger = u_vinteger_div10;
-        }
+        u_writeDigits( buffer, boffset, u_vinteger, ndigits );
                 
 		return StuffedPair.cons(ndigits, rounded);
     }
 
+    /**
+     * The 32 bit version of {@link #u_printLong(byte[], int, long)}, no rounding
+     * needed and the value has to be positive so the divides can be signed.
+     * 
+     * @return The number of digits written
+     */
+    protected static int u_printInt( byte[] buffer, int boffset, int u_vinteger ) {
+
+        assert u_vinteger > 0;
+
+        int ndigits = CachedPowers.numUnsignedIntDigits( u_vinteger );
+
+        u_writeDigits( buffer, boffset, u_vinteger, ndigits );
+
+        return ndigits;
+    }
+
+    /**
+     * Every digit of an unsigned long, unlike {@link #u_printLong(byte[], int, long)}
+     * which stops at the double precision.
+     *
+     * @return The number of digits written
+     */
+    protected static int u_printLongExact( byte[] buffer, int boffset, long u_vinteger ) {
+
+        int ndigits = CachedPowers.numUnsignedLongDigits( u_vinteger );
+
+        u_writeDigits( buffer, boffset, u_vinteger, ndigits );
+
+        return ndigits;
+    }
+
+    /**
+     * "00" to "99", so digits come out two to a lookup.
+     */
+    protected static final byte[] digit_pairs = new byte[200];
+
+    static {
+        for( int i = 0; i < 100; ++i ) {
+            digit_pairs[2 * i] = (byte)('0' + i / 10);
+            digit_pairs[2 * i + 1] = (byte)('0' + i % 10);
+        }
+    }
+
+    /**
+     * Writes the unsigned value as exactly {@code ndigits} digits, which has
+     * to be its digit count. From the right: 8 digits at a time while it is
+     * too big for an int, which keeps the long divides to two at most, then
+     * pairs from the table.
+     */
+    protected static void u_writeDigits( byte[] buffer, int boffset, long u_v, int ndigits ) {
+
+        int pos = boffset + ndigits;
+
+        if( u_v < 0 ) {
+            // the one unsigned divide: 10^8 = 2^8 * 5^8
+            long u_q = (u_v >>> 8) / 390625;
+            write8Digits( buffer, pos -= 8, (int)(u_v - u_q * 100_000_000L) );
+            u_v = u_q;
+        }
+
+        while( u_v >= 100_000_000L ) {
+            long q = u_v / 100_000_000L;
+            write8Digits( buffer, pos -= 8, (int)(u_v - q * 100_000_000L) );
+            u_v = q;
+        }
+
+        int v = (int)u_v;
+        while( v >= 100 ) {
+            int q = v / 100;
+            int r = (v - q * 100) << 1;
+            buffer[--pos] = digit_pairs[r + 1];
+            buffer[--pos] = digit_pairs[r];
+            v = q;
+        }
+
+        if( v >= 10 ) {
+            buffer[--pos] = digit_pairs[2 * v + 1];
+            buffer[--pos] = digit_pairs[2 * v];
+        }
+        else {
+            buffer[--pos] = (byte)('0' + v);
+        }
+
+        assert pos == boffset;
+    }
+
+    /**
+     * Exactly 8 digits, with leading zeros, of a value under 10^8. The
+     * divides are reciprocal multiplies, exact over that range.
+     */
+    protected static void write8Digits( byte[] buffer, int pos, int v ) {
+
+        int hi = (int)((v * 109_951_163L) >>> 40); // v / 10^4
+        int lo = v - hi * 10_000;
+
+        int hh = (hi * 5243) >>> 19; // hi / 100
+        int lh = (lo * 5243) >>> 19;
+        int hl = (hi - hh * 100) << 1;
+        int ll = (lo - lh * 100) << 1;
+        hh <<= 1;
+        lh <<= 1;
+
+        buffer[pos]     = digit_pairs[hh];
+        buffer[pos + 1] = digit_pairs[hh + 1];
+        buffer[pos + 2] = digit_pairs[hl];
+        buffer[pos + 3] = digit_pairs[hl + 1];
+        buffer[pos + 4] = digit_pairs[lh];
+        buffer[pos + 5] = digit_pairs[lh + 1];
+        buffer[pos + 6] = digit_pairs[ll];
+        buffer[pos + 7] = digit_pairs[ll + 1];
+    }
+
     protected static void round( byte[] buffer, int pos, long u_delta, long u_rest, long  u_onef, long u_winf ) {
 
         while (Long.compareUnsigned( u_rest, u_winf ) < 0
@@ -257,10 +1090,8 @@ public class Grisu {
         // Write the integer part.
         while( digits > 0 ) {
 
-            // n div 10^x = n div 2^x div 5^x
-            // can't just divide because of sign bit
             long pow10 = CachedPowers.u_pow10[digits - 1];
-            int u_dig = (int)((u_intpart >>> digits - 1) / (pow10 >>> digits - 1));  
+            int u_dig = u_leadingDigit( u_intpart, digits - 1 );
             
             u_intpart = u_intpart - (u_dig * pow10);
 
@@ -307,6 +1138,33 @@ public class Grisu {
         }
     }
 
+    /**
+     * u_n / 10^k for the digit loop, where it is a single digit. The integer
+     * part nearly always fits an int's worth of digits, and a divide by a
+     * constant is a multiply and shift instead of a real divide.
+     */
+    protected static int u_leadingDigit( long u_n, int k ) {
+
+        if( u_n >= 0 ) {
+            switch( k ) {
+                case 0: return (int)u_n;
+                case 1: return (int)(u_n / 10L);
+                case 2: return (int)(u_n / 100L);
+                case 3: return (int)(u_n / 1_000L);
+                case 4: return (int)(u_n / 10_000L);
+                case 5: return (int)(u_n / 100_000L);
+                case 6: return (int)(u_n / 1_000_000L);
+                case 7: return (int)(u_n / 10_000_000L);
+                case 8: return (int)(u_n / 100_000_000L);
+                case 9: return (int)(u_n / 1_000_000_000L);
+            }
+        }
+
+        // n div 10^x = n div 2^x div 5^x
+        // can't just divide because of sign bit
+        return (int)((u_n >>> k) / CachedPowers.u_pow5[k]);
+    }
+
     protected static long u_grisu2( byte[] buffer, int boffset, long u_vf, int ve ) {
 
         // calculate the lower and upper bounds
@@ -322,14 +1180,15 @@ public class Grisu {
         u_vf <<= shiftval;
         ve -= shiftval;
 
-        shiftval = Long.numberOfLeadingZeros( u_mf );
-        u_mf <<= shiftval;
-        me -= shiftval;
-
         shiftval = Long.numberOfLeadingZeros( u_pf );
         u_pf <<= shiftval;
         pe -= shiftval;
 
+        // the lower bound has to share the upper's exponent, not be normalized
+        // on its own: for 2^n it is a bit shorter and would be off by one (0.125)
+        u_mf <<= me - pe;
+        me = pe;
+
         // Find the correct cached power of 10 in ersatz float representation
         int index = CachedPowers.cacheIndexFrom2Exp( ve );
         int base10exp = CachedPowers.exponentFromIndex( index );
@@ -429,6 +1288,12 @@ public class Grisu {
             else {
                 // These will all be large numbers:
                 // 123456789e0 -> 1.23456789e8 and 123e10 -> 1.23e12
+                // The quickpath prints whole integers, so drop the trailing
+                // zeros first: 1500e0 -> 15e2 -> 1.5e3
+                for( ; givendigits > 1 && buffer[boffset + givendigits - 1] == '0'; --givendigits )
+                    exp++;
+                blen = givendigits;
+
                 int elen;
                 if( givendigits == 1 ) {
                     // 1e10 -> 1e10
@@ -480,7 +1345,7 @@ public class Grisu {
 
                 if( givendigits == 1 ) {
                     int explen = appendExponent( buffer, boffset + givendigits, exp );
-                    return boffset + givendigits + explen;
+                    return givendigits + explen;
                 }
                 else {
 
@@ -499,5 +1364,106 @@ public class Grisu {
         }
         // Why is there no way to suppress unreachable code ERRORS? Sometimes it is needed
         //assert false : "Unreachable";
-    }    
+    }
+
+    /**
+     * Rounds the Grisu digit string half-up to {@code decimals} fractional
+     * digits and lays it out in plain notation, padding with zeros as needed.
+     * Like {@link #formatBuffer(byte[], int, int, int)} this only writes
+     * positive values.
+     * 
+     * @param buffer The buffer the digits were printed into.
+     * @param boffset The start position of the digits.
+     * @param blen The number of digits, zero for a zero value.
+     * @param exp The base 10 exponent of the last digit.
+     * @param decimals The number of fractional digits to print.
+     * @return The final length of the formatted number
+     */
+    protected static int formatFixed( byte[] buffer, int boffset, int blen, int exp, int decimals ) {
+
+        // the number of digits that survive the cut at 10^-decimals
+        int keep = blen + exp + decimals;
+
+        if( keep < blen ) {
+
+            boolean roundup = keep >= 0 && buffer[boffset + keep] >= '5';
+            blen = Math.max( keep, 0 );
+            exp = -decimals;
+
+            if( roundup ) {
+
+                int i = blen - 1;
+                for( ; i >= 0 && buffer[boffset + i] == '9'; --i )
+                    ;
+
+                if( i >= 0 ) {
+                    // 1.2349 -> 1.235 (the nines became zeros, just drop them)
+                    buffer[boffset + i]++;
+                    exp += blen - i - 1;
+                    blen = i + 1;
+                }
+                else {
+                    // 9.996 -> 10.00 or 0.006 -> 0.01
+                    buffer[boffset] = '1';
+                    exp += blen;
+                    blen = 1;
+                }
+            }
+        }
+
+        int intdigits = blen + exp;
+        int pos;
+
+        if( blen == 0 ) {
+
+            // everything rounded away
+            buffer[boffset] = '0';
+            pos = 1;
+        }
+        else if( intdigits >= blen ) {
+
+            // 12e2 -> 1200
+            for( pos = blen; pos < intdigits; ++pos )
+                buffer[boffset + pos] = '0';
+        }
+        else if( intdigits > 0 ) {
+
+            // 12345e-2 -> 123.45, the fraction gets padded below
+            System.arraycopy( buffer, boffset + intdigits, buffer, boffset + intdigits + 1, blen - intdigits );
+            buffer[boffset + intdigits] = '.';
+
+            int end = boffset + intdigits + 1 + decimals;
+            for( pos = boffset + blen + 1; pos < end; ++pos )
+                buffer[pos] = '0';
+
+            return intdigits + 1 + decimals;
+        }
+        else {
+
+            // 12e-4 -> 0.0012
+            int leadingzeros = -intdigits;
+            System.arraycopy( buffer, boffset, buffer, boffset + 2 + leadingzeros, blen );
+
+            buffer[boffset] = '0';
+            buffer[boffset + 1] = '.';
+            for( int i = 0; i < leadingzeros; ++i )
+                buffer[boffset + 2 + i] = '0';
+
+            int end = boffset + 2 + decimals;
+            for( pos = boffset + 2 + leadingzeros + blen; pos < end; ++pos )
+                buffer[pos] = '0';
+
+            return 2 + decimals;
+        }
+
+        // integral, so just a zero fraction if any
+        if( decimals > 0 ) {
+
+            buffer[boffset + pos++] = '.';
+            for( int i = 0; i < decimals; ++i )
+                buffer[boffset + pos++] = '0';
+        }
+
+        return pos;
+    }
 }
@@ -0,0 +1,114 @@
+package zerog.util.grisu;
+
+import java.util.Arrays;
+
+/**
+ * A small cache in front of {@link Grisu#doubleToBytes(byte[], int, double)}
+ * for streams where the same values keep coming back, such as prices. It is
+ * direct-mapped: the raw bits of the double hash to exactly one slot, and a
+ * miss just overwrites whatever was there. The printed bytes live in one
+ * flat slab, {@link Grisu#longest_output} bytes a slot, so a hit is a
+ * compare and an arraycopy.
+ * <p>
+ * When values hardly repeat a miss costs a little more than calling the
+ * formatter directly, so measure first, see CacheBenchmark.
+ * <p>
+ * Not thread safe and deliberately without locks or volatile reads. Give
+ * each thread its own, they are only {@code capacity} times 34 bytes or so
+ * with the usual layouts. A formatter with wide {@code max_int_digits} or
+ * {@code max_frac_digits} needs slots of up to 344 bytes.
+ */
+public class GrisuCache {
+
+    public final Grisu fmt;
+    public final int capacity;
+
+    private final int slot_size;
+    private final int shift;
+    private final long[] keys;
+    private final short[] lens;
+    private final byte[] slab;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param fmt The layout to use.
+     * @param capacity The number of slots, rounded up to a power of two, at least 2.
+     */
+    public GrisuCache( Grisu fmt, int capacity ) {
+
+        if( capacity < 1 || capacity > (1 << 24) )
+            throw new IllegalArgumentException( "capacity out of range: " + capacity );
+
+        // at least 2 slots, a shift of 64 would be a shift of 0
+        int bits = Math.max( 32 - Integer.numberOfLeadingZeros( capacity - 1 ), 1 );
+
+        // room for the longest this layout prints, not just the usual 24
+        int slot_size = fmt.longest_output;
+        if( (long)slot_size << bits > Integer.MAX_VALUE - 8 )
+            throw new IllegalArgumentException( "capacity too large for " + slot_size + " byte slots: " + capacity );
+
+        this.fmt = fmt;
+        this.capacity = 1 << bits;
+        this.slot_size = slot_size;
+        this.shift = 64 - bits;
+        this.keys = new long[this.capacity];
+        this.lens = new short[this.capacity];
+        this.slab = new byte[this.capacity * slot_size];
+    }
+
+    /**
+     * The same bytes as {@link Grisu#doubleToBytes(byte[], int, double)}.
+     *
+     * @param buffer A buffer with at least {@link Grisu#longest_output} bytes available
+     * @param boffset Where to begin writing.
+     * @param value The double value
+     * @return The number of bytes written
+     */
+    public int doubleToBytes( byte[] buffer, int boffset, double value ) {
+
+        long u_bits = Double.doubleToRawLongBits( value );
+
+        // Fibonacci hashing, the top bits mix in all of the key
+        int slot = (int)((u_bits * 0x9e3779b97f4a7c15L) >>> shift);
+        int soffset = slot * slot_size;
+        int len = lens[slot];
+
+        // an empty slot has length 0, which no value prints as
+        if( len != 0 && keys[slot] == u_bits ) {
+
+            hits++;
+        }
+        else {
+
+            misses++;
+            len = fmt.doubleToBytes( slab, soffset, value );
+            keys[slot] = u_bits;
+            lens[slot] = (short)len;
+        }
+
+        System.arraycopy( slab, soffset, buffer, boffset, len );
+        return len;
+    }
+
+    public long hits() {
+
+        return hits;
+    }
+
+    public long misses() {
+
+        return misses;
+    }
+
+    /**
+     * Empties every slot and zeros the counters.
+     */
+    public void clear() {
+
+        Arrays.fill( lens, (short)0 );
+        hits = 0;
+        misses = 0;
+    }
+}
@@ -0,0 +1,216 @@
+package zerog.util.grisu;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffered text output of numbers to an {@link OutputStream} or a
+ * {@link WritableByteChannel}. Values are printed straight into the tail of
+ * one buffer that is handed to the sink when there is no longer room for the
+ * longest value, so there is no copy per value and nothing is allocated after
+ * construction.
+ * <p>
+ * Not thread safe, the same as any other buffered stream.
+ */
+public class GrisuWriter implements Flushable, Closeable {
+
+    /**
+     * Room for the longest thing one call can write, a double and a separator,
+     * with a layout no wider than the default. See {@link #minBufferSize(Grisu)}.
+     */
+    public static final int min_buffer_size = Grisu.longest_double_output + 1;
+
+    public final Grisu fmt;
+
+    // fmt.longest_output, what a value needs free before it is printed
+    private final int longest;
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer bb;
+    private int pos;
+
+    /**
+     * A 64KB buffer and the default layout.
+     */
+    public GrisuWriter( OutputStream out ) {
+
+        this( out, Grisu.fmt, 64 * 1024 );
+    }
+
+    public GrisuWriter( OutputStream out, Grisu fmt, int size ) {
+
+        this( out, null, fmt, size );
+    }
+
+    /**
+     * A 64KB buffer and the default layout.
+     */
+    public GrisuWriter( WritableByteChannel channel ) {
+
+        this( channel, Grisu.fmt, 64 * 1024 );
+    }
+
+    public GrisuWriter( WritableByteChannel channel, Grisu fmt, int size ) {
+
+        this( null, channel, fmt, size );
+    }
+
+    /**
+     * For subclasses that override {@link #sink(byte[], int, int)} and {@link #close()}.
+     */
+    protected GrisuWriter( Grisu fmt, int size ) {
+
+        this( null, null, fmt, size );
+    }
+
+    private GrisuWriter( OutputStream out, WritableByteChannel channel, Grisu fmt, int size ) {
+
+        if( size < minBufferSize( fmt ))
+            throw new IllegalArgumentException( "buffer size must be at least " + minBufferSize( fmt ));
+
+        this.out = out;
+        this.channel = channel;
+        this.fmt = fmt;
+        this.longest = fmt.longest_output;
+        this.buffer = new byte[size];
+        this.bb = channel != null ? ByteBuffer.wrap( buffer ) : null;
+    }
+
+    /**
+     * Room for the longest thing one call can write with this layout, a
+     * double and a separator.
+     */
+    public static int minBufferSize( Grisu fmt ) {
+
+        return fmt.longest_output + 1;
+    }
+
+    public void writeDouble( double value ) throws IOException {
+
+        if( pos > buffer.length - longest )
+            drain();
+
+        pos += fmt.doubleToBytes( buffer, pos, value );
+    }
+
+    public void writeFloat( float value ) throws IOException {
+
+        if( pos > buffer.length - longest )
+            drain();
+
+        pos += fmt.floatToBytes( buffer, pos, value );
+    }
+
+    /**
+     * Every digit, with a minus sign when negative.
+     */
+    public void writeLong( long value ) throws IOException {
+
+        if( pos > buffer.length - Grisu.longest_long_output )
+            drain();
+
+        pos += Grisu.longToBytes( buffer, pos, value );
+    }
+
+    public void writeByte( int b ) throws IOException {
+
+        if( pos == buffer.length )
+            drain();
+
+        buffer[pos++] = (byte)b;
+    }
+
+    public void writeBytes( byte[] b, int off, int len ) throws IOException {
+
+        if( len > buffer.length - pos ) {
+
+            drain();
+            if( len > buffer.length ) {
+                sink( b, off, len );
+                return;
+            }
+        }
+
+        System.arraycopy( b, off, buffer, pos, len );
+        pos += len;
+    }
+
+    /**
+     * Every value in the range with a separator between them, formatted a
+     * buffer at a time.
+     */
+    public void writeDoubles( double[] src, int from, int to, byte separator ) throws IOException {
+
+        while( from < to ) {
+
+            if( pos > buffer.length - longest - 1 )
+                drain();
+
+            long res = fmt.formatArray( src, from, to, separator, buffer, pos );
+            pos += StuffedPair.car( res );
+            from = StuffedPair.cdr( res );
+        }
+    }
+
+    /**
+     * Hands the buffer to the sink then flushes the sink.
+     */
+    @Override
+    public void flush() throws IOException {
+
+        drain();
+        if( out != null )
+            out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        try {
+            flush();
+        } finally {
+            if( out != null )
+                out.close();
+            else
+                channel.close();
+        }
+    }
+
+    /**
+     * The number of bytes waiting in the buffer.
+     */
+    protected int buffered() {
+
+        return pos;
+    }
+
+    private void drain() throws IOException {
+
+        sink( buffer, 0, pos );
+        pos = 0;
+    }
+
+    /**
+     * Where the buffer goes. Large writes from {@link #writeBytes(byte[], int, int)}
+     * come here directly.
+     */
+    protected void sink( byte[] b, int off, int len ) throws IOException {
+
+        if( out != null ) {
+            out.write( b, off, len );
+            return;
+        }
+
+        ByteBuffer src = b == buffer ? bb : ByteBuffer.wrap( b );
+        src.limit( off + len );
+        src.position( off );
+        while( src.hasRemaining() )
+            channel.write( src );
+    }
+}
@@ -0,0 +1,144 @@
+package zerog.util.grisu;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Grisu} that counts which path each value takes. It prints exactly
+ * what a plain formatter with the same settings would. FlightRecorderGrisu,
+ * in the grisu-jfr module since it needs Java 11, adds sampled Flight
+ * Recorder events on top.
+ * <p>
+ * It is a subclass so that it costs nothing until it is used: while it is
+ * never loaded the JIT sees one implementation of the hooks it overrides and
+ * inlines them as before. Once it is loaded those call sites check the type
+ * first, which is a compare, and the counting itself is only paid here.
+ * <p>
+ * The counters are {@link LongAdder}s, so threads sharing an instance don't
+ * contend on them. A double is counted once in {@link #special} or in one of
+ * the digit paths, in fixed mode too, and once more in one of the layouts
+ * unless it is special or fixed mode, which has its own layout uncounted.
+ * The layouts also count floats, which always go through the shortest path
+ * uncounted.
+ */
+public class InstrumentedGrisu extends Grisu {
+
+    /**
+     * NaN, infinities and zeros, which print fixed text.
+     */
+    public final LongAdder special = new LongAdder();
+
+    /**
+     * Integers printed straight from the significand.
+     */
+    public final LongAdder quickpath = new LongAdder();
+
+    /**
+     * Values with few digits, caught by scaling with an exact power of ten.
+     */
+    public final LongAdder lowprec = new LongAdder();
+
+    /**
+     * Everything left to the engine, Grisu2 or Schubfach.
+     */
+    public final LongAdder engine_path = new LongAdder();
+
+    /**
+     * Laid out with an exponent, 1.5e+20.
+     */
+    public final LongAdder exponent = new LongAdder();
+
+    /**
+     * Laid out in plain notation, 1500.0.
+     */
+    public final LongAdder fixed = new LongAdder();
+
+    public InstrumentedGrisu( int max_int_digits, int max_frac_digits, char exp_char, Engine engine ) {
+
+        super( max_int_digits, max_frac_digits, exp_char, engine );
+    }
+
+    /**
+     * The same settings as the given formatter.
+     */
+    public static InstrumentedGrisu of( Grisu fmt ) {
+
+        return new InstrumentedGrisu( fmt.max_int_digits, fmt.max_frac_digits, (char)fmt.exp_char, fmt.engine );
+    }
+
+    public void reset() {
+
+        special.reset();
+        quickpath.reset();
+        lowprec.reset();
+        engine_path.reset();
+        exponent.reset();
+        fixed.reset();
+    }
+
+    @Override
+    public String toString() {
+
+        return "special=" + special.sum() + " quickpath=" + quickpath.sum() + " lowprec=" + lowprec.sum()
+                + " engine=" + engine_path.sum() + " exponent=" + exponent.sum() + " fixed=" + fixed.sum();
+    }
+
+    @Override
+    protected void digitsPath( int path ) {
+
+        switch( path ) {
+            case path_quick: quickpath.increment(); break;
+            case path_lowprec: lowprec.increment(); break;
+            case path_special: special.increment(); break;
+            default: engine_path.increment();
+        }
+    }
+
+    @Override
+    protected int formatBuffer( byte[] buffer, int boffset, int blen, int exp ) {
+
+        int len = super.formatBuffer( buffer, boffset, blen, exp );
+
+        if( indexOf( buffer, boffset, len, exp_char ) >= 0 )
+            exponent.increment();
+        else
+            fixed.increment();
+
+        return len;
+    }
+
+    static int indexOf( byte[] buffer, int boffset, int len, byte b ) {
+
+        for( int i = 0; i < len; ++i )
+            if( buffer[boffset + i] == b )
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * Digits from the first nonzero one to the last, before any exponent, so
+     * 1500.0 has 2 and 0.00105 has 3.
+     */
+    static int significantDigits( byte[] buffer, int boffset, int len, byte exp_char ) {
+
+        int count = 0, pending = 0;
+        boolean started = false;
+
+        for( int i = boffset; i < boffset + len; ++i ) {
+            byte c = buffer[i];
+            if( c == exp_char )
+                break;
+            if( c == '0' ) {
+                if( started )
+                    pending++;
+            }
+            else if( c >= '1' && c <= '9' ) {
+                started = true;
+                count += pending + 1;
+                pending = 0;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,345 @@
+package zerog.util.grisu;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A minimal JSON emitter into a growable byte array, for documents that are
+ * mostly numbers. Commas and colons are put in from the nesting, doubles go
+ * through {@link Grisu#doubleToBytes(byte[], int, double)} and longs are
+ * printed exactly. The array only grows by doubling and is kept across
+ * {@link #reset()}, so once it is big enough a whole document is written
+ * without any garbage.
+ * <p>
+ * JSON has no NaN or Infinity, so they are written as configurable tokens,
+ * {@code null} by default. Checking is minimal: mismatched ends are caught
+ * but a value in an object without a name, for instance, is not. Not thread safe.
+ */
+public class JsonWriter {
+
+    private static final byte[] null_text = "null".getBytes();
+    private static final byte[] true_text = "true".getBytes();
+    private static final byte[] false_text = "false".getBytes();
+    private static final byte[] hex = "0123456789abcdef".getBytes();
+
+    private static final byte in_object = 1;
+    private static final byte in_array = 2;
+
+    public final Grisu fmt;
+    public final byte[] nan_token;
+    public final byte[] pos_inf_token;
+    public final byte[] neg_inf_token;
+
+    private byte[] buffer;
+    private int pos;
+
+    // per nesting level, what it is and whether it has anything in it yet
+    private byte[] kinds = new byte[16];
+    private boolean[] nonempty = new boolean[16];
+    private int depth;
+    private boolean after_name;
+
+    /**
+     * The default layout, non-finite values as {@code null}.
+     */
+    public JsonWriter() {
+
+        this( Grisu.fmt, null_text, null_text, null_text, 1024 );
+    }
+
+    /**
+     * @param fmt The layout for doubles, the exponent character has to be e or E
+     * @param nan_token Written for NaN, it has to be valid JSON, such as {@code null} or {@code "NaN"}
+     * @param pos_inf_token Written for positive infinity
+     * @param neg_inf_token Written for negative infinity
+     * @param size The starting size of the buffer
+     */
+    public JsonWriter( Grisu fmt, byte[] nan_token, byte[] pos_inf_token, byte[] neg_inf_token, int size ) {
+
+        if( fmt.exp_char != 'e' && fmt.exp_char != 'E' )
+            throw new IllegalArgumentException( "exponent character must be e or E" );
+
+        this.fmt = fmt;
+        this.nan_token = nan_token;
+        this.pos_inf_token = pos_inf_token;
+        this.neg_inf_token = neg_inf_token;
+        this.buffer = new byte[Math.max( size, fmt.longest_output + 1 )];
+    }
+
+    /**
+     * The document so far is in {@code buffer()[0]} up to {@link #length()}.
+     * The array changes when it grows.
+     */
+    public byte[] buffer() {
+
+        return buffer;
+    }
+
+    public int length() {
+
+        return pos;
+    }
+
+    /**
+     * Starts a new document, keeping the buffer.
+     */
+    public JsonWriter reset() {
+
+        pos = 0;
+        depth = 0;
+        after_name = false;
+        return this;
+    }
+
+    public void writeTo( OutputStream out ) throws IOException {
+
+        out.write( buffer, 0, pos );
+    }
+
+    public void writeTo( ByteBuffer out ) {
+
+        out.put( buffer, 0, pos );
+    }
+
+    public JsonWriter beginObject() {
+
+        open( in_object, '{' );
+        return this;
+    }
+
+    public JsonWriter endObject() {
+
+        close( in_object, '}' );
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+
+        open( in_array, '[' );
+        return this;
+    }
+
+    public JsonWriter endArray() {
+
+        close( in_array, ']' );
+        return this;
+    }
+
+    public JsonWriter name( CharSequence name ) {
+
+        if( depth == 0 || kinds[depth - 1] != in_object || after_name )
+            throw new IllegalStateException( "name outside an object" );
+
+        separate();
+        string( name );
+        ensure( 1 );
+        buffer[pos++] = ':';
+        after_name = true;
+        return this;
+    }
+
+    public JsonWriter value( double value ) {
+
+        separate();
+        ensure( fmt.longest_output );
+
+        if( value != value )
+            raw( nan_token );
+        else if( value == Double.POSITIVE_INFINITY )
+            raw( pos_inf_token );
+        else if( value == Double.NEGATIVE_INFINITY )
+            raw( neg_inf_token );
+        else
+            pos += fmt.doubleToBytes( buffer, pos, value );
+
+        return this;
+    }
+
+    public JsonWriter value( long value ) {
+
+        separate();
+        ensure( Grisu.longest_long_output );
+        pos += Grisu.longToBytes( buffer, pos, value );
+        return this;
+    }
+
+    public JsonWriter value( boolean value ) {
+
+        separate();
+        raw( value ? true_text : false_text );
+        return this;
+    }
+
+    public JsonWriter value( CharSequence value ) {
+
+        separate();
+        if( value == null )
+            raw( null_text );
+        else
+            string( value );
+
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+
+        separate();
+        raw( null_text );
+        return this;
+    }
+
+    /**
+     * A whole array of doubles.
+     */
+    public JsonWriter array( double[] src, int from, int to ) {
+
+        beginArray();
+        for( int i = from; i < to; ++i )
+            value( src[i] );
+
+        return endArray();
+    }
+
+    /**
+     * A whole array of longs.
+     */
+    public JsonWriter array( long[] src, int from, int to ) {
+
+        beginArray();
+        for( int i = from; i < to; ++i )
+            value( src[i] );
+
+        return endArray();
+    }
+
+    private void open( byte kind, char c ) {
+
+        separate();
+
+        if( depth == kinds.length ) {
+            kinds = Arrays.copyOf( kinds, depth * 2 );
+            nonempty = Arrays.copyOf( nonempty, depth * 2 );
+        }
+
+        kinds[depth] = kind;
+        nonempty[depth] = false;
+        depth++;
+
+        ensure( 1 );
+        buffer[pos++] = (byte)c;
+    }
+
+    private void close( byte kind, char c ) {
+
+        if( depth == 0 || kinds[depth - 1] != kind || after_name )
+            throw new IllegalStateException( "unbalanced " + c );
+
+        depth--;
+        ensure( 1 );
+        buffer[pos++] = (byte)c;
+    }
+
+    /**
+     * The comma before anything but the first thing at a level, none after a name.
+     */
+    private void separate() {
+
+        if( after_name ) {
+            after_name = false;
+            return;
+        }
+
+        if( depth == 0 )
+            return;
+
+        if( nonempty[depth - 1] ) {
+            ensure( 1 );
+            buffer[pos++] = ',';
+        }
+
+        nonempty[depth - 1] = true;
+    }
+
+    private void raw( byte[] text ) {
+
+        ensure( text.length );
+        System.arraycopy( text, 0, buffer, pos, text.length );
+        pos += text.length;
+    }
+
+    /**
+     * Quoted and escaped, as UTF-8.
+     */
+    private void string( CharSequence s ) {
+
+        int len = s.length();
+        ensure( len * 6 + 2 );
+
+        byte[] b = buffer;
+        int p = pos;
+
+        b[p++] = '"';
+        for( int i = 0; i < len; ++i ) {
+
+            char c = s.charAt( i );
+
+            if( c >= 0x20 && c < 0x80 ) {
+
+                if( c == '"' || c == '\\' )
+                    b[p++] = '\\';
+                b[p++] = (byte)c;
+            }
+            else if( c < 0x20 ) {
+
+                b[p++] = '\\';
+                switch( c ) {
+                    case '\n': b[p++] = 'n'; break;
+                    case '\r': b[p++] = 'r'; break;
+                    case '\t': b[p++] = 't'; break;
+                    case '\b': b[p++] = 'b'; break;
+                    case '\f': b[p++] = 'f'; break;
+                    default:
+                        b[p++] = 'u';
+                        b[p++] = '0';
+                        b[p++] = '0';
+                        b[p++] = hex[c >>> 4];
+                        b[p++] = hex[c & 0xf];
+                }
+            }
+            else if( c < 0x800 ) {
+
+                b[p++] = (byte)(0xc0 | c >>> 6);
+                b[p++] = (byte)(0x80 | c & 0x3f);
+            }
+            else if( Character.isHighSurrogate( c ) && i + 1 < len && Character.isLowSurrogate( s.charAt( i + 1 ))) {
+
+                int cp = Character.toCodePoint( c, s.charAt( ++i ));
+                b[p++] = (byte)(0xf0 | cp >>> 18);
+                b[p++] = (byte)(0x80 | cp >>> 12 & 0x3f);
+                b[p++] = (byte)(0x80 | cp >>> 6 & 0x3f);
+                b[p++] = (byte)(0x80 | cp & 0x3f);
+            }
+            else if( Character.isSurrogate( c )) {
+
+                b[p++] = '?';
+            }
+            else {
+
+                b[p++] = (byte)(0xe0 | c >>> 12);
+                b[p++] = (byte)(0x80 | c >>> 6 & 0x3f);
+                b[p++] = (byte)(0x80 | c & 0x3f);
+            }
+        }
+        b[p++] = '"';
+
+        pos = p;
+    }
+
+    private void ensure( int n ) {
+
+        if( n > buffer.length - pos )
+            buffer = Arrays.copyOf( buffer, Math.max( buffer.length * 2, pos + n ));
+    }
+}
@@ -0,0 +1,112 @@
+package zerog.util.grisu;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link GrisuWriter} whose buffer goes into a memory mapped file instead
+ * of through write calls. The file is mapped a window at a time, and mapping
+ * the next window grows the file. On close the file is cut back to what was
+ * actually written.
+ * <p>
+ * Values are still printed into the heap buffer first. Putting each value
+ * into the mapping on its own goes through a scratch copy and a bounds
+ * checked put per value, which costs more than one large put per buffer.
+ * <p>
+ * Java has no way to unmap a buffer, the windows go away when they are
+ * collected. The windows should be large, in the tens of MB, so there are
+ * few of them. Not thread safe.
+ */
+public class MappedGrisuWriter extends GrisuWriter {
+
+    public final long window;
+
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private long base;
+
+    /**
+     * 64MB windows, a 64KB buffer and the default layout.
+     */
+    public MappedGrisuWriter( Path path ) throws IOException {
+
+        this( path, Grisu.fmt, 64 * 1024, 64L * 1024 * 1024 );
+    }
+
+    /**
+     * @param path The file, which is created or truncated
+     * @param fmt The layout to use
+     * @param size The heap buffer size
+     * @param window The size of each mapping, at most {@link Integer#MAX_VALUE}
+     */
+    public MappedGrisuWriter( Path path, Grisu fmt, int size, long window ) throws IOException {
+
+        super( fmt, size );
+
+        if( window <= 0 || window > Integer.MAX_VALUE )
+            throw new IllegalArgumentException( "bad window size " + window );
+
+        this.window = window;
+        this.channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                         StandardOpenOption.READ, StandardOpenOption.WRITE );
+        this.map = channel.map( FileChannel.MapMode.READ_WRITE, 0, window );
+    }
+
+    /**
+     * The number of bytes written so far, including what is still buffered.
+     */
+    public long length() {
+
+        return base + map.position() + buffered();
+    }
+
+    /**
+     * Puts the buffer in the mapping and forces the current window to the
+     * device, see {@link MappedByteBuffer#force()}. Earlier windows are left
+     * to the OS.
+     */
+    @Override
+    public void flush() throws IOException {
+
+        super.flush();
+        map.force();
+    }
+
+    /**
+     * Cuts the file to the written length and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if( map == null )
+            return;
+
+        try {
+            super.flush();
+            channel.truncate( base + map.position() );
+        } finally {
+            map = null;
+            channel.close();
+        }
+    }
+
+    @Override
+    protected void sink( byte[] b, int off, int len ) throws IOException {
+
+        while( len > 0 ) {
+
+            if( !map.hasRemaining() ) {
+                base += map.position();
+                map = channel.map( FileChannel.MapMode.READ_WRITE, base, window );
+            }
+
+            int n = Math.min( len, map.remaining() );
+            map.put( b, off, n );
+            off += n;
+            len -= n;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package zerog.util.grisu;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Formats very large double arrays on a {@link ForkJoinPool}. The array is
+ * cut into chunks of {@code chunk_size} values and each chunk is printed
+ * with {@link Grisu#formatArray(double[], int, int, byte, byte[], int)} into
+ * its own region, then the regions are put back together in order.
+ * <p>
+ * Since nobody knows how long a chunk will be until it is printed, each one
+ * gets room for its worst case. Going to a byte array, those regions are in
+ * the destination itself and afterwards are slid down over the gaps using
+ * the running total of the chunk lengths, so the destination needs
+ * {@link #maxOutputLength(int)} bytes. Going to a channel, a window of
+ * chunks is printed into scratch owned by this object and then written out
+ * in order, so the memory stays bounded however big the array is.
+ * <p>
+ * Apart from a few small task objects per call there is no garbage. An
+ * instance shouldn't be used from more than one thread at a time because of
+ * the channel scratch.
+ */
+public class ParallelFormatter {
+
+    public final Grisu fmt;
+    public final ForkJoinPool pool;
+    public final int chunk_size;
+
+    /**
+     * The worst case for one value and its separator with this layout.
+     */
+    final int longest_with_separator;
+
+    private byte[][] scratch;
+    private ByteBuffer[] scratchbb;
+    private int[] scratchlen;
+
+    /**
+     * A formatter on the common pool with 16K values a chunk.
+     *
+     * @param fmt The layout to use.
+     */
+    public ParallelFormatter( Grisu fmt ) {
+
+        this( fmt, ForkJoinPool.commonPool(), 16 * 1024 );
+    }
+
+    /**
+     * @param fmt The layout to use.
+     * @param pool Where to run the chunks.
+     * @param chunk_size Values in each chunk. Small chunks balance better,
+     * large ones have less overhead. Anything in the thousands is fine.
+     */
+    public ParallelFormatter( Grisu fmt, ForkJoinPool pool, int chunk_size ) {
+
+        this.fmt = fmt;
+        this.pool = pool;
+        this.chunk_size = chunk_size;
+        this.longest_with_separator = fmt.longest_output + 1;
+    }
+
+    /**
+     * The size of destination {@link #formatArray(double[], int, int, byte, byte[], int)}
+     * needs for {@code count} values.
+     */
+    public long maxOutputLength( int count ) {
+
+        return (long)count * longest_with_separator;
+    }
+
+    /**
+     * Prints the values with a separator between them into one contiguous run
+     * of the destination, the same output as {@link Grisu#formatArray(double[], int, int, byte, byte[], int)}
+     * would give with a big enough buffer.
+     *
+     * @param src The values
+     * @param from The first index to print
+     * @param to One past the last index to print
+     * @param separator Written between the values
+     * @param buffer Where to write, with at least {@link #maxOutputLength(int)}
+     * bytes for {@code to - from} values after the offset. The bytes after the
+     * returned length are scribbled on.
+     * @param boffset Where to begin writing
+     * @return The number of bytes written
+     */
+    public int formatArray( double[] src, int from, int to, byte separator, byte[] buffer, int boffset ) {
+
+        if( maxOutputLength( to - from ) > buffer.length - boffset )
+            throw new IndexOutOfBoundsException( "need " + maxOutputLength( to - from ) + " bytes" );
+
+        int nchunks = (to - from + chunk_size - 1) / chunk_size;
+        if( nchunks == 0 )
+            return 0;
+
+        int[] lengths = new int[nchunks];
+        pool.invoke( new Chunks( src, from, to, separator, 0, nchunks, buffer, boffset, chunk_size * longest_with_separator, lengths ));
+
+        // slide everything down into place, in order so nothing is overwritten
+        int pos = boffset + lengths[0];
+        for( int k = 1; k < nchunks; ++k ) {
+
+            System.arraycopy( buffer, boffset + k * chunk_size * longest_with_separator, buffer, pos, lengths[k] );
+            pos += lengths[k];
+        }
+
+        return pos - boffset;
+    }
+
+    /**
+     * Prints the values with a separator between them to the channel, in order.
+     *
+     * @param src The values
+     * @param from The first index to print
+     * @param to One past the last index to print
+     * @param separator Written between the values
+     * @param channel Where to write
+     * @return The number of bytes written
+     * @throws IOException From the channel
+     */
+    public long writeArray( double[] src, int from, int to, byte separator, WritableByteChannel channel ) throws IOException {
+
+        int window = 2 * pool.getParallelism();
+        if( scratch == null || scratch.length != window ) {
+
+            scratch = new byte[window][chunk_size * longest_with_separator];
+            scratchbb = new ByteBuffer[window];
+            scratchlen = new int[window];
+            for( int i = 0; i < window; ++i )
+                scratchbb[i] = ByteBuffer.wrap( scratch[i] );
+        }
+
+        long total = 0;
+        for( int start = from; start < to; start += window * chunk_size ) {
+
+            int end = (int)Math.min( to, (long)start + (long)window * chunk_size );
+            int nchunks = (end - start + chunk_size - 1) / chunk_size;
+
+            pool.invoke( new Chunks( src, start, end, separator, 0, nchunks, null, 0, 0, scratchlen ));
+
+            for( int k = 0; k < nchunks; ++k ) {
+
+                ByteBuffer bb = scratchbb[k];
+                bb.clear();
+
+                // the window may end mid array, then the separator goes on
+                if( k == nchunks - 1 && end != to )
+                    scratch[k][scratchlen[k]++] = separator;
+
+                bb.limit( scratchlen[k] );
+
+                while( bb.hasRemaining() )
+                    total += channel.write( bb );
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Splits a range of chunks in half until there is one left, then prints it.
+     * With no buffer it prints into the channel scratch instead.
+     */
+    private final class Chunks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final double[] src;
+        final int from, to;
+        final byte separator;
+        final int lo, hi;
+        final byte[] buffer;
+        final int boffset, stride;
+        final int[] lengths;
+
+        Chunks( double[] src, int from, int to, byte separator, int lo, int hi, byte[] buffer, int boffset, int stride, int[] lengths ) {
+
+            this.src = src;
+            this.from = from;
+            this.to = to;
+            this.separator = separator;
+            this.lo = lo;
+            this.hi = hi;
+            this.buffer = buffer;
+            this.boffset = boffset;
+            this.stride = stride;
+            this.lengths = lengths;
+        }
+
+        @Override
+        protected void compute() {
+
+            if( hi - lo > 1 ) {
+
+                int mid = (lo + hi) >>> 1;
+                invokeAll( new Chunks( src, from, to, separator, lo, mid, buffer, boffset, stride, lengths ),
+                           new Chunks( src, from, to, separator, mid, hi, buffer, boffset, stride, lengths ));
+                return;
+            }
+
+            int start = from + lo * chunk_size;
+            int end = Math.min( to, start + chunk_size );
+
+            byte[] out = buffer != null ? buffer : scratch[lo];
+            int off = buffer != null ? boffset + lo * stride : 0;
+
+            long res = fmt.formatArray( src, start, end, separator, out, off );
+            assert StuffedPair.cdr( res ) == end;
+
+            int len = StuffedPair.car( res );
+            if( end != to )
+                out[off + len++] = separator;
+
+            lengths[lo] = len;
+        }
+    }
+}
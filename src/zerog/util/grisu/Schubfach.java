@@ -0,0 +1,245 @@
+package zerog.util.grisu;
+
+import static zerog.util.grisu.DiyFp.doubleExponentBias;
+import static zerog.util.grisu.DiyFp.floatExponentBias;
+import static zerog.util.grisu.DiyFp.u_doubleHiddenBit;
+import static zerog.util.grisu.DiyFp.u_floatHiddenBit;
+
+/*
+ * Raffaello Giulietti's Schubfach, the same algorithm as Double.toString in
+ * newer JDKs. Like Ryu it is table driven, but it doesn't need the digit by
+ * digit loop to find the shortest: it computes the rounded decimal interval
+ * ends directly with one 128 bit power of ten and only checks at most two
+ * candidates, so the output is always the shortest and closest. Unlike
+ * Double.toString it doesn't insist on 2 digits, so 5e-323, not 4.9e-323.
+ * 
+ * https://drive.google.com/file/d/1IEeATSVnEE6TkrHlCYNY2GjaraBjOT4f
+ * 
+ * Unlike Grisu2 it never gives up on the shortest. It costs three 64x128
+ * bit multiplies where Grisu2 has three 64x64, but there is no digit loop.
+ */
+public class Schubfach {
+
+    static final int min_2exp = 1 - doubleExponentBias;
+    static final long u_min_significand = u_doubleHiddenBit;
+
+    static final int float_min_2exp = 1 - floatExponentBias;
+    static final int u_float_min_significand = u_floatHiddenBit;
+
+    private static final long u_M63 = 0x7FFFFFFF_FFFFFFFFL;
+    private static final long u_M32 = 0xFFFFFFFFL;
+
+    /**
+     * Writes the shortest digits that round trip into the buffer.
+     * 
+     * @param u_vf The significand with the hidden bit.
+     * @param ve The exponent of the significand as an integer.
+     * @return The digit count and the base 10 exponent as a {@link StuffedPair}
+     */
+    static long u_shortest( byte[] buffer, int boffset, long u_vf, int ve ) {
+
+        return u_toDecimal( buffer, boffset, ve, u_vf );
+    }
+
+    protected static long u_toDecimal( byte[] buffer, int boffset, int q, long u_c ) {
+
+        // the interval is open if the significand is odd
+        int out = (int)u_c & 0x1;
+
+        // Everything is worked in quarters of an ulp so the bounds are integers
+        long u_cb = u_c << 2;
+        long u_cbr = u_cb + 2;
+        long u_cbl;
+        int k;
+
+        if( u_c != u_min_significand | q == min_2exp ) {
+            u_cbl = u_cb - 2;
+            k = CachedPowers.flog10pow2( q );
+        }
+        else {
+            // 2^n, lower bound is closer
+            u_cbl = u_cb - 1;
+            k = CachedPowers.flog10threeQuartersPow2( q );
+        }
+
+        int h = q + CachedPowers.flog2pow10( -k ) + 2;
+
+        int index = k - CachedPowers.g_min_ten_exp;
+        long u_g1 = CachedPowers.u_g1[index];
+        long u_g0 = CachedPowers.u_g0[index];
+
+        long u_vb = u_roundOdd( u_g1, u_g0, u_cb << h );
+        long u_vbl = u_roundOdd( u_g1, u_g0, u_cbl << h );
+        long u_vbr = u_roundOdd( u_g1, u_g0, u_cbr << h );
+
+        long u_s = u_vb >> 2;
+
+        // The paper stops at s >= 100 (and scales c < C_TINY up by 10) only
+        // to keep Java's rule of at least 2 digits. Small subnormals like
+        // 4.9e-323 are 5e-323 without it, so check from 10.
+        if( u_s >= 10 ) {
+
+            // Is there a candidate with one less digit? s / 10 * 10 with
+            // a multiply (floor(2^67 / 10) + 1) instead of a divide.
+            long u_sp10 = 10 * DiyFp.multiplyHigh( u_s, 115_292_150_460_684_698L << 4 );
+            long u_tp10 = u_sp10 + 10;
+
+            boolean upin = u_vbl + out <= u_sp10 << 2;
+            boolean wpin = (u_tp10 << 2) + out <= u_vbr;
+
+            if( upin != wpin )
+                return u_printDecimal( buffer, boffset, upin ? u_sp10 : u_tp10, k );
+        }
+
+        long u_t = u_s + 1;
+
+        boolean uin = u_vbl + out <= u_s << 2;
+        boolean win = (u_t << 2) + out <= u_vbr;
+
+        if( uin != win )
+            return u_printDecimal( buffer, boffset, uin ? u_s : u_t, k );
+
+        // both are in, take the closest, or the even one on a tie
+        long cmp = u_vb - (u_s + u_t << 1);
+        return u_printDecimal( buffer, boffset, cmp < 0 || cmp == 0 && (u_s & 0x1) == 0 ? u_s : u_t, k );
+    }
+
+    /**
+     * The top 64 bits of the 189 bit product of the 126 bit power and the
+     * shifted significand, with the rest folded into the low bit (round to
+     * odd) so the comparisons above are still exact.
+     */
+    protected static long u_roundOdd( long u_g1, long u_g0, long u_cp ) {
+
+        long u_x1 = DiyFp.multiplyHigh( u_g0, u_cp );
+        long u_y0 = u_g1 * u_cp;
+        long u_y1 = DiyFp.multiplyHigh( u_g1, u_cp );
+        long u_z = (u_y0 >>> 1) + u_x1;
+        long u_vbp = u_y1 + (u_z >>> 63);
+
+        return u_vbp | (u_z & u_M63) + u_M63 >>> 63;
+    }
+
+    protected static long u_printDecimal( byte[] buffer, int boffset, long u_f, int exp ) {
+
+        // the candidates can have zeros on the end, at most 16 of them
+        if( u_f % 10_000_000_000_000_000L == 0 ) {
+            u_f /= 10_000_000_000_000_000L;
+            exp += 16;
+        }
+        if( u_f % 100_000_000L == 0 ) {
+            u_f /= 100_000_000L;
+            exp += 8;
+        }
+        if( u_f % 10_000L == 0 ) {
+            u_f /= 10_000L;
+            exp += 4;
+        }
+        if( u_f % 100L == 0 ) {
+            u_f /= 100L;
+            exp += 2;
+        }
+        if( u_f % 10L == 0 ) {
+            u_f /= 10L;
+            exp += 1;
+        }
+
+        int ndigits = StuffedPair.car( Grisu.u_printLong( buffer, boffset, u_f ) );
+        return StuffedPair.cons( ndigits, exp );
+    }
+
+    /**
+     * The float version of {@link #u_shortest(byte[], int, long, int)}. It
+     * all fits in 32 bits except the one multiply by the 64 bit power.
+     */
+    static long u_shortestFloat( byte[] buffer, int boffset, int u_vf, int ve ) {
+
+        return u_toDecimalFloat( buffer, boffset, ve, u_vf );
+    }
+
+    protected static long u_toDecimalFloat( byte[] buffer, int boffset, int q, int u_c ) {
+
+        int out = u_c & 0x1;
+
+        long u_cb = u_c << 2;
+        long u_cbr = u_cb + 2;
+        long u_cbl;
+        int k;
+
+        if( u_c != u_float_min_significand | q == float_min_2exp ) {
+            u_cbl = u_cb - 2;
+            k = CachedPowers.flog10pow2( q );
+        }
+        else {
+            u_cbl = u_cb - 1;
+            k = CachedPowers.flog10threeQuartersPow2( q );
+        }
+
+        int h = q + CachedPowers.flog2pow10( -k ) + 33;
+
+        long u_g = CachedPowers.u_fg[k - CachedPowers.fg_min_ten_exp];
+
+        int u_vb = u_roundOdd( u_g, u_cb << h );
+        int u_vbl = u_roundOdd( u_g, u_cbl << h );
+        int u_vbr = u_roundOdd( u_g, u_cbr << h );
+
+        int u_s = u_vb >> 2;
+
+        // from 10, not 100, see u_toDecimal
+        if( u_s >= 10 ) {
+
+            // s / 10 * 10 as (s * ceil(2^34 / 10)) >> 34
+            int u_sp10 = 10 * (int)(u_s * 1_717_986_919L >>> 34);
+            int u_tp10 = u_sp10 + 10;
+
+            boolean upin = u_vbl + out <= u_sp10 << 2;
+            boolean wpin = (u_tp10 << 2) + out <= u_vbr;
+
+            if( upin != wpin )
+                return u_printDecimal( buffer, boffset, upin ? u_sp10 : u_tp10, k );
+        }
+
+        int u_t = u_s + 1;
+
+        boolean uin = u_vbl + out <= u_s << 2;
+        boolean win = (u_t << 2) + out <= u_vbr;
+
+        if( uin != win )
+            return u_printDecimal( buffer, boffset, uin ? u_s : u_t, k );
+
+        int cmp = u_vb - (u_s + u_t << 1);
+        return u_printDecimal( buffer, boffset, cmp < 0 || cmp == 0 && (u_s & 0x1) == 0 ? u_s : u_t, k );
+    }
+
+    protected static int u_roundOdd( long u_g, long u_cp ) {
+
+        long u_x1 = DiyFp.multiplyHigh( u_g, u_cp );
+        long u_vbp = u_x1 >>> 31;
+
+        return (int)(u_vbp | (u_x1 & u_M32) + u_M32 >>> 32);
+    }
+
+    protected static long u_printDecimal( byte[] buffer, int boffset, int u_f, int exp ) {
+
+        // at most 10 digits, so no more than 9 zeros
+        if( u_f % 100_000_000 == 0 ) {
+            u_f /= 100_000_000;
+            exp += 8;
+        }
+        if( u_f % 10_000 == 0 ) {
+            u_f /= 10_000;
+            exp += 4;
+        }
+        if( u_f % 100 == 0 ) {
+            u_f /= 100;
+            exp += 2;
+        }
+        if( u_f % 10 == 0 ) {
+            u_f /= 10;
+            exp += 1;
+        }
+
+        int ndigits = Grisu.u_printInt( buffer, boffset, u_f );
+        return StuffedPair.cons( ndigits, exp );
+    }
+}
@@ -0,0 +1,137 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Holds the formatter to "no garbage per call": every entry point is run a
+ * million times and the thread's allocated bytes compared before and after.
+ * The byte[] and buffer ones have to allocate nothing, the String ones no
+ * more than the same String made directly from the bytes. Each is warmed up
+ * first so the per thread scratch already exists. A few bytes of slack cover
+ * the measuring itself.
+ * <p>
+ * AllocationBenchmark runs the same calls under JMH's -prof gc.
+ */
+public class AllocationTest {
+
+    private static final int calls = 1 << 20;
+    private static final int nmask = 1023;
+    private static final long slack = 1024;
+
+    private static com.sun.management.ThreadMXBean mx;
+
+    private static final double[] values = new double[nmask + 1];
+
+    private final byte[] buf = new byte[Grisu.longest_fixed_output + 20];
+    private final ByteBuffer heap = ByteBuffer.allocate( 64 );
+    private final ByteBuffer direct = ByteBuffer.allocateDirect( 64 );
+    private final StringBuilder sb = new StringBuilder( 64 );
+    private final StringWriter sw = new StringWriter( 64 );
+    private final double[] array = new double[100];
+
+    private interface Call {
+        void run( int i ) throws Exception;
+    }
+
+    private interface ToString {
+        String run( int i ) throws Exception;
+    }
+
+    @BeforeClass
+    public static void setup() {
+        java.lang.management.ThreadMXBean t = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue( t instanceof com.sun.management.ThreadMXBean );
+        mx = (com.sun.management.ThreadMXBean)t;
+        Assume.assumeTrue( mx.isThreadAllocatedMemorySupported() );
+        mx.setThreadAllocatedMemoryEnabled( true );
+
+        // every path: specials, integers, few digits, the engine
+        Random r = new Random( 3 );
+        for( int i = 0; i <= nmask; ++i ) {
+            switch( i % 5 ) {
+                case 0: values[i] = Double.longBitsToDouble( r.nextLong() ); break;
+                case 1: values[i] = r.nextInt(); break;
+                case 2: values[i] = r.nextInt( 100000 ) / 100.0; break;
+                case 3: values[i] = r.nextDouble(); break;
+                default: values[i] = i % 10 == 4 ? Double.NaN : 0.0;
+            }
+        }
+    }
+
+    private static long allocated( Call c ) throws Exception {
+        long tid = Thread.currentThread().getId();
+
+        for( int i = 0; i < calls / 8; ++i )
+            c.run( i & nmask );
+
+        long before = mx.getThreadAllocatedBytes( tid );
+        for( int i = 0; i < calls; ++i )
+            c.run( i & nmask );
+        return mx.getThreadAllocatedBytes( tid ) - before;
+    }
+
+    private static void assertNone( String name, Call c ) throws Exception {
+        long bytes = allocated( c );
+        assertTrue( name + " allocated " + bytes + " bytes in " + calls + " calls", bytes <= slack );
+    }
+
+    @Test
+    public void test_bytes_allocate_nothing() throws Exception {
+        Grisu[] fmts = { Grisu.fmt, Grisu.shortest_fmt };
+        for( Grisu g : fmts ) {
+            String e = " " + g.engine;
+            assertNone( "doubleToBytes(byte[])" + e, i -> g.doubleToBytes( buf, 0, values[i] ));
+            assertNone( "doubleToBytes(heap ByteBuffer)" + e, i -> g.doubleToBytes( (ByteBuffer)heap.clear(), values[i] ));
+            assertNone( "doubleToBytes(direct ByteBuffer)" + e, i -> g.doubleToBytes( (ByteBuffer)direct.clear(), values[i] ));
+            assertNone( "doubleToBytes(direct ByteBuffer, int)" + e, i -> g.doubleToBytes( direct, 0, values[i] ));
+            assertNone( "floatToBytes" + e, i -> g.floatToBytes( buf, 0, (float)values[i] ));
+            assertNone( "doubleToBytesFixed" + e, i -> g.doubleToBytesFixed( buf, 0, values[i], i & 15 ));
+            assertNone( "decimalToBytes" + e, i -> g.decimalToBytes( buf, 0, Double.doubleToRawLongBits( values[i] ), i & 15, (i & 1) == 0 ));
+            assertNone( "formatArray" + e, i -> g.formatArray( array, 0, array.length, (byte)',', buf, 0 ));
+            assertNone( "appendDouble(StringBuilder)" + e, i -> g.appendDouble( sb, values[i] ).setLength( 0 ));
+            assertNone( "appendDouble(Writer)" + e, i -> ((StringWriter)g.appendDouble( sw, values[i] )).getBuffer().setLength( 0 ));
+        }
+
+        assertNone( "longToBytes", i -> Grisu.longToBytes( buf, 0, Double.doubleToRawLongBits( values[i] )));
+        assertNone( "unsignedLongToBytes", i -> Grisu.unsignedLongToBytes( buf, 0, Double.doubleToRawLongBits( values[i] )));
+        assertNone( "intToBytes", i -> Grisu.intToBytes( buf, 0, (int)Double.doubleToRawLongBits( values[i] )));
+        assertNone( "unsignedIntToBytes", i -> Grisu.unsignedIntToBytes( buf, 0, (int)Double.doubleToRawLongBits( values[i] )));
+    }
+
+    @Test
+    public void test_strings_allocate_only_the_string() throws Exception {
+        byte[] scratch = new byte[Grisu.longest_double_output];
+
+        assertOnlyTheString( "doubleToString", i -> Grisu.fmt.doubleToString( values[i] ));
+        assertOnlyTheString( "doubleToString(scratch)", i -> Grisu.fmt.doubleToString( values[i], scratch ));
+        assertOnlyTheString( "doubleToString SHORTEST", i -> Grisu.shortest_fmt.doubleToString( values[i] ));
+        assertOnlyTheString( "doubleToStringStateless", i -> Grisu.fmt.doubleToStringStateless( values[i] ));
+        assertOnlyTheString( "floatToString", i -> Grisu.fmt.floatToString( (float)values[i] ));
+        assertOnlyTheString( "floatToString(scratch)", i -> Grisu.fmt.floatToString( (float)values[i], scratch ));
+        assertOnlyTheString( "doubleToStringFixed", i -> Grisu.fmt.doubleToStringFixed( values[i], i & 15 ));
+    }
+
+    /**
+     * Against what the same Strings cost made straight from their bytes, since
+     * the fixed and float ones are not the length of the double ones.
+     */
+    private static void assertOnlyTheString( String name, ToString c ) throws Exception {
+        byte[][] text = new byte[nmask + 1][];
+        for( int i = 0; i <= nmask; ++i )
+            text[i] = c.run( i ).getBytes( StandardCharsets.ISO_8859_1 );
+
+        long one = allocated( i -> new String( text[i], 0, text[i].length, StandardCharsets.ISO_8859_1 ));
+        long bytes = allocated( c::run );
+        assertTrue( name + " allocated " + bytes + " bytes against " + one + " for the Strings", bytes <= one + slack );
+    }
+}
@@ -0,0 +1,113 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks the generated PowerTables against the paper and against BigDecimal,
+ * and that both the sparse and the dense table land Grisu2's product in the
+ * exponent window it needs.
+ */
+public class CachedPowersTest {
+
+    // the normalized binary exponents of doubles, 2^-1074 up to just under 2^1024
+    private static final int min_ve = -1074 - 63;
+    private static final int max_ve = 1023 - 63;
+
+    @Test
+    public void test_paper_table() {
+        // first and last entries of the table in Loitsch's paper
+        assertEquals( 87, PowerTables.u_f.length );
+        assertEquals( 0xfa8fd5a0_081c0288L, PowerTables.u_f[0] );
+        assertEquals( -1220, PowerTables.e[0] );
+        assertEquals( 0xaf87023b_9bf0ee6bL, PowerTables.u_f[86] );
+        assertEquals( 1066, PowerTables.e[86] );
+
+        // and every 8th dense one is the same power
+        for( int i = 0; i < PowerTables.u_f.length; ++i ) {
+            assertEquals( PowerTables.u_f[i], PowerTables.u_f_dense[i * 8] );
+            assertEquals( PowerTables.e[i], PowerTables.e_dense[i * 8] );
+        }
+    }
+
+    @Test
+    public void test_rounded_to_nearest() {
+        for( int i = 0; i < PowerTables.u_f_dense.length; ++i ) {
+
+            long u_f = PowerTables.u_f_dense[i];
+            int e = PowerTables.e_dense[i];
+            assertTrue( u_f < 0 ); // top bit set
+
+            BigDecimal ulp = pow2( e );
+            BigDecimal cached = new BigDecimal( new BigInteger( Long.toUnsignedString( u_f ))).multiply( ulp );
+            BigDecimal exact = BigDecimal.ONE.scaleByPowerOfTen( PowerTables.start_ten_exp + i );
+
+            // within half an ulp
+            assertTrue( "10^" + (PowerTables.start_ten_exp + i),
+                    cached.subtract( exact ).abs().multiply( BigDecimal.valueOf( 2 )).compareTo( ulp ) <= 0 );
+        }
+    }
+
+    private static BigDecimal pow2( int e ) {
+        return e >= 0
+                ? new BigDecimal( BigInteger.ONE.shiftLeft( e ))
+                : BigDecimal.ONE.divide( new BigDecimal( BigInteger.ONE.shiftLeft( -e )));
+    }
+
+    @Test
+    public void test_index_matches_floating_point() {
+        // what cacheIndexFrom2Exp was before it went to integers
+        double bits_per_10 = Math.log( 2 ) / Math.log( 10 );
+
+        for( int ve = -1200; ve <= 1100; ++ve ) {
+            double dk = -((61 + ve) * bits_per_10 + PowerTables.start_ten_exp);
+            int n = (int)(dk + 1);
+            assertEquals( "ve " + ve, n / 8 + 1, CachedPowers.cacheIndexFrom2Exp( ve, 8 ));
+        }
+    }
+
+    @Test
+    public void test_product_exponent() {
+        // -31 at the top, one over the paper's window, which u_digitGen takes
+        // since it keeps the integer part in a long
+        assertWindow( 8, PowerTables.u_f, PowerTables.e, -60, -31 );
+        // the dense table keeps the product within one decimal digit
+        assertWindow( 1, PowerTables.u_f_dense, PowerTables.e_dense, -57, -54 );
+    }
+
+    private static void assertWindow( int step, long[] u_f, int[] e, int lo, int hi ) {
+        for( int ve = min_ve; ve <= max_ve; ++ve ) {
+
+            int i = CachedPowers.cacheIndexFrom2Exp( ve, step );
+            assertTrue( "ve " + ve, i >= 0 && i < u_f.length );
+
+            int pe = DiyFp.multiplyExponents( e[i], ve );
+            assertTrue( "ve " + ve + " gives " + pe, pe >= lo && pe <= hi );
+        }
+    }
+
+    @Test
+    public void test_shortest_table() {
+        // as it was built on load before it was generated
+        BigInteger mask63 = BigInteger.ONE.shiftLeft( 63 ).subtract( BigInteger.ONE );
+
+        for( int k = CachedPowers.g_min_ten_exp; k <= CachedPowers.g_max_ten_exp; ++k ) {
+
+            int r = CachedPowers.flog2pow10( -k ) - 125;
+            BigInteger b = k <= 0
+                    ? BigInteger.TEN.pow( -k ).shiftRight( r )
+                    : BigInteger.ONE.shiftLeft( -r ).divide( BigInteger.TEN.pow( k ));
+            BigInteger g = b.add( BigInteger.ONE );
+
+            assertEquals( "k " + k, g.shiftRight( 63 ).longValue(), CachedPowers.u_g1[k - CachedPowers.g_min_ten_exp] );
+            assertEquals( "k " + k, g.and( mask63 ).longValue(), CachedPowers.u_g0[k - CachedPowers.g_min_ten_exp] );
+        }
+
+        assertEquals( 343, CachedPowers.g_max_ten_exp );
+    }
+}
@@ -0,0 +1,73 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Every way DiyFp can multiply against BigInteger, whichever one the JDK
+ * selected at load. The pom runs it again with zerog.grisu.portableMultiply
+ * set, so the selected path is the plain Java one there.
+ */
+public class DiyFpTest {
+
+    private static final BigInteger two64 = BigInteger.ONE.shiftLeft( 64 );
+
+    private static final long[] edges = { 0, 1, 2, -1, -2, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE + 1,
+            0xFFFFFFFFL, 0x1_00000000L, 0xFFFFFFFF_00000000L, 0x80000000_80000000L, 0xFA8FD5A0_081C0288L };
+
+    private static BigInteger unsigned( long u_x ) {
+        BigInteger b = BigInteger.valueOf( u_x );
+        return u_x < 0 ? b.add( two64 ) : b;
+    }
+
+    private static void check( long u_x, long u_y ) {
+        String msg = Long.toHexString( u_x ) + " * " + Long.toHexString( u_y );
+
+        BigInteger signed = BigInteger.valueOf( u_x ).multiply( BigInteger.valueOf( u_y ));
+        long hi = signed.shiftRight( 64 ).longValue();
+        assertEquals( msg, hi, DiyFp.multiplyHigh( u_x, u_y ));
+        assertEquals( msg, hi, DiyFp.portableMultiplyHigh( u_x, u_y ));
+
+        BigInteger product = unsigned( u_x ).multiply( unsigned( u_y ));
+        long u_hi = product.shiftRight( 64 ).longValue();
+        assertEquals( msg, u_hi, DiyFp.u_multiplyHigh( u_x, u_y ));
+        assertEquals( msg, u_hi, DiyFp.u_unsignedFromSigned( DiyFp.multiplyHigh( u_x, u_y ), u_x, u_y ));
+        assertEquals( msg, u_hi, DiyFp.u_unsignedFromSigned( DiyFp.portableMultiplyHigh( u_x, u_y ), u_x, u_y ));
+
+        // rounded half up on the low 64 bits
+        long u_rounded = product.add( BigInteger.ONE.shiftLeft( 63 )).shiftRight( 64 ).longValue();
+        assertEquals( msg, u_rounded, DiyFp.u_multiplySignificands( u_x, u_y ));
+        assertEquals( msg, u_rounded, DiyFp.u_portableMultiplySignificands( u_x, u_y ));
+    }
+
+    @Test
+    public void test_edges() {
+        for( long u_x : edges )
+            for( long u_y : edges )
+                check( u_x, u_y );
+    }
+
+    @Test
+    public void test_random() {
+        Random r = new Random( 23 );
+        for( int i = 0; i < 200000; ++i ) {
+            long u_x = r.nextLong();
+            long u_y = r.nextLong();
+            check( u_x, u_y );
+            // normalized significands, as Grisu2 multiplies them
+            check( u_x | Long.MIN_VALUE, u_y | Long.MIN_VALUE );
+            check( u_x >>> r.nextInt( 64 ), u_y | Long.MIN_VALUE );
+        }
+    }
+
+    @Test
+    public void test_multiply() {
+        DiyFp p = DiyFp.multiply( new DiyFp( Long.MIN_VALUE, 0 ), new DiyFp( Long.MIN_VALUE, 0 ));
+        assertEquals( 1L << 62, p.u_f );
+        assertEquals( 64, p.e );
+    }
+}
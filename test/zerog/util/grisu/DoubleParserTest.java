@@ -0,0 +1,113 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DoubleParserTest {
+
+    private static double parse( String s ) {
+        byte[] b = s.getBytes();
+        return DoubleParser.parseDouble( b, 0, b.length );
+    }
+
+    private static void assertParses( String s ) {
+        assertEquals( s, Double.doubleToRawLongBits( Double.parseDouble( s ) ),
+                      Double.doubleToRawLongBits( parse( s ) ));
+    }
+
+    @Test
+    public void test_simple() {
+        assertEquals( 0.0, parse( "0" ), 0.0 );
+        assertEquals( 1.5, parse( "1.5" ), 0.0 );
+        assertEquals( -12.345, parse( "-12.345" ), 0.0 );
+        assertEquals( 0.5, parse( ".5" ), 0.0 );
+        assertEquals( 5.0, parse( "5." ), 0.0 );
+        assertEquals( 1e10, parse( "1E+10" ), 0.0 );
+        assertEquals( 123.0, parse( "+123" ), 0.0 );
+    }
+
+    @Test
+    public void test_specials() {
+        assertEquals( Double.NaN, parse( "NaN" ), 0.0 );
+        assertEquals( Double.POSITIVE_INFINITY, parse( "Infinity" ), 0.0 );
+        assertEquals( Double.NEGATIVE_INFINITY, parse( "-Infinity" ), 0.0 );
+        assertEquals( Double.doubleToRawLongBits( -0.0 ), Double.doubleToRawLongBits( parse( "-0.0" )));
+    }
+
+    @Test
+    public void test_edges() {
+        assertParses( "1.7976931348623157e308" );
+        assertParses( "1.7976931348623158e308" );
+        assertParses( "1.7976931348623159e308" );
+        assertParses( "1e309" );
+        assertParses( "4.9e-324" );
+        assertParses( "2.4703282292062327e-324" );
+        assertParses( "2.4703282292062328e-324" );
+        assertParses( "1e-400" );
+        assertParses( "2.2250738585072011e-308" );
+        assertParses( "2.2250738585072012e-308" );
+        assertParses( "1e23" );
+        assertParses( "7.2057594037927933e16" );
+    }
+
+    @Test
+    public void test_halfway() {
+        // 2^53 + 1 and 2^53 + 3 are ties that go to even in opposite directions
+        assertParses( "9007199254740993" );
+        assertParses( "9007199254740995" );
+        assertParses( "1.00000000000000011102230246251565404236316680908203125" );
+        assertParses( "1.00000000000000011102230246251565404236316680908203124" );
+        assertParses( "1.000000000000000111022302462515654042363166809082031250000000000000000000001" );
+    }
+
+    @Test( expected = NumberFormatException.class )
+    public void test_empty() {
+        parse( "" );
+    }
+
+    @Test( expected = NumberFormatException.class )
+    public void test_garbage() {
+        parse( "1.2.3" );
+    }
+
+    @Test( expected = NumberFormatException.class )
+    public void test_noexp() {
+        parse( "1e" );
+    }
+
+    @Test
+    public void test_offset() {
+        byte[] b = "xx-42.125yy".getBytes();
+        assertEquals( -42.125, DoubleParser.parseDouble( b, 2, 7 ), 0.0 );
+    }
+
+    @Test
+    public void test_roundtrip() {
+        Random r = new Random( 42 );
+        byte[] buf = new byte[Grisu.longest_double_output];
+        for( int i = 0; i < 100000; ++i ) {
+            double d = Double.longBitsToDouble( r.nextLong() );
+            if( Double.isNaN( d ) )
+                continue;
+            int len = Grisu.shortest_fmt.doubleToBytes( buf, 0, d );
+            assertEquals( d, DoubleParser.parseDouble( buf, 0, len ), 0.0 );
+        }
+    }
+
+    @Test
+    public void test_exact_expansions() {
+        Random r = new Random( 42 );
+        for( int i = 0; i < 2000; ++i ) {
+            double d = Double.longBitsToDouble( r.nextLong() );
+            if( Double.isNaN( d ) || Double.isInfinite( d ))
+                continue;
+            BigDecimal half = new BigDecimal( Math.ulp( d ) ).divide( BigDecimal.valueOf( 2 ));
+            assertParses( new BigDecimal( d ).toString() );
+            assertParses( new BigDecimal( d ).add( half ).toString() );
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GrisuCacheTest {
+
+    private static String format( GrisuCache c, double d ) {
+        byte[] out = new byte[Grisu.longest_double_output + 3];
+        int len = c.doubleToBytes( out, 3, d );
+        return new String( out, 3, len );
+    }
+
+    @Test
+    public void test_hits() {
+        GrisuCache c = new GrisuCache( Grisu.fmt, 1000 );
+        assertEquals( 1024, c.capacity );
+
+        assertEquals( "0.1", format( c, 0.1 ));
+        assertEquals( "0.1", format( c, 0.1 ));
+        assertEquals( "0.0", format( c, -0.0 ));
+        assertEquals( "0.0", format( c, 0.0 ));
+        assertEquals( "NaN", format( c, Double.NaN ));
+        assertEquals( "NaN", format( c, Double.NaN ));
+        assertEquals( 2, c.hits() );
+        assertEquals( 4, c.misses() );
+
+        c.clear();
+        assertEquals( 0, c.hits() );
+        assertEquals( "0.1", format( c, 0.1 ));
+        assertEquals( 1, c.misses() );
+    }
+
+    @Test
+    public void test_matches_formatter() {
+        // tiny so nearly everything collides and gets overwritten
+        GrisuCache c = new GrisuCache( Grisu.shortest_fmt, 1 );
+        assertEquals( 2, c.capacity );
+
+        Random r = new Random( 13 );
+        double[] pool = new double[50];
+        for( int i = 0; i < pool.length; ++i )
+            pool[i] = Double.longBitsToDouble( r.nextLong() );
+
+        GrisuCache big = new GrisuCache( Grisu.shortest_fmt, 64 );
+        byte[] b = new byte[Grisu.longest_double_output];
+        for( int i = 0; i < 100000; ++i ) {
+            double d = pool[r.nextInt( pool.length )];
+            String want = new String( b, 0, Grisu.shortest_fmt.doubleToBytes( b, 0, d ));
+            assertEquals( want, format( c, d ));
+            assertEquals( want, format( big, d ));
+        }
+
+        assertEquals( 100000, c.hits() + c.misses() );
+        assertEquals( 100000, big.hits() + big.misses() );
+    }
+
+    @Test
+    public void test_wide_formatter() {
+        // plain notation all the way, far past 24 bytes
+        Grisu wide = new Grisu( 400, 400, 'e' );
+        assertEquals( 344, wide.longest_output );
+        assertEquals( Grisu.longest_double_output, Grisu.fmt.longest_output );
+
+        GrisuCache c = new GrisuCache( wide, 2 );
+        double[] values = { -1.7976931348623157e308, -4.9e-324, -2.2250738585072014e-308, 1e300, 0.5 };
+        byte[] b = new byte[wide.longest_output];
+        byte[] out = new byte[wide.longest_output];
+
+        for( int round = 0; round < 3; ++round ) {
+            for( double d : values ) {
+                String want = new String( b, 0, wide.doubleToBytes( b, 0, d ));
+                assertEquals( want, new String( out, 0, c.doubleToBytes( out, 0, d )));
+            }
+        }
+        assertEquals( 310 + 2, c.doubleToBytes( out, 0, -1.7976931348623157e308 ));
+    }
+}
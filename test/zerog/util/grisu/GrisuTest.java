@@ -1,7 +1,15 @@
 package zerog.util.grisu;
 
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Random;
 
 import org.junit.Assert;
@@ -290,4 +298,490 @@ public class GrisuTest {
 		String s = Grisu.fmt.doubleToString(d);
 		assertEquals("3.6445917645030247e-267", s);
 	}
+	@Test
+	public void test_pow2fracs() {
+		double d = 0.125;
+		for (int i = 3; i < 60; ++i, d /= 2) {
+			String s = Grisu.fmt.doubleToString(d);
+			assertEquals(d, Double.parseDouble(s), 0.0);
+		}
+	}
+
+	@Test
+	public void test_fixed_pad() {
+		assertEquals("1.500", Grisu.fmt.doubleToStringFixed(1.5, 3));
+		assertEquals("1200.00", Grisu.fmt.doubleToStringFixed(1200, 2));
+		assertEquals("0.0012", Grisu.fmt.doubleToStringFixed(0.0012, 4));
+		assertEquals("0.00", Grisu.fmt.doubleToStringFixed(0.0, 2));
+		assertEquals("-3.140000", Grisu.fmt.doubleToStringFixed(-3.14, 6));
+		assertEquals("100000000000000000000.0", Grisu.fmt.doubleToStringFixed(1e20, 1));
+	}
+
+	@Test
+	public void test_fixed_round() {
+		assertEquals("0.13", Grisu.fmt.doubleToStringFixed(0.125, 2));
+		assertEquals("123.46", Grisu.fmt.doubleToStringFixed(123.456, 2));
+		assertEquals("10.00", Grisu.fmt.doubleToStringFixed(9.995, 2));
+		assertEquals("0.01", Grisu.fmt.doubleToStringFixed(0.005, 2));
+		assertEquals("0.00", Grisu.fmt.doubleToStringFixed(0.0049, 2));
+		assertEquals("-0.00", Grisu.fmt.doubleToStringFixed(-0.001, 2));
+		assertEquals("0.000", Grisu.fmt.doubleToStringFixed(1e-300, 3));
+		assertEquals("1000", Grisu.fmt.doubleToStringFixed(999.5, 0));
+		assertEquals("3", Grisu.fmt.doubleToStringFixed(2.5, 0));
+	}
+
+	@Test
+	public void test_fixed_ties() {
+		assertEquals("-0.00", Grisu.fmt.doubleToStringFixed(-0.0, 2));
+		assertEquals("-0", Grisu.fmt.doubleToStringFixed(-0.0, 0));
+		assertEquals("0.00", Grisu.fmt.doubleToStringFixed(0.0, 2));
+		// an exact tie in binary goes up
+		assertEquals("0.13", Grisu.fmt.doubleToStringFixed(0.125, 2));
+		assertEquals("-0.13", Grisu.fmt.doubleToStringFixed(-0.125, 2));
+		assertEquals("0.4", Grisu.fmt.doubleToStringFixed(0.375, 1));
+		// 2.675 is 2.67499999... but half-up on its shortest digits, like String.format
+		assertEquals("2.68", Grisu.fmt.doubleToStringFixed(2.675, 2));
+		assertEquals("1.01", Grisu.fmt.doubleToStringFixed(1.005, 2));
+		// the same digits whichever engine the formatter uses
+		assertEquals("2.68", Grisu.shortest_fmt.doubleToStringFixed(2.675, 2));
+	}
+
+	@Test
+	public void test_fixed_format() {
+		Random r = new Random(42);
+		for (int i = 0; i < 10000; ++i) {
+			int decimals = r.nextInt(7);
+			double d = (r.nextInt(2000000) - 1000000) / Math.pow(10, r.nextInt(7));
+			String sd = String.format("%." + decimals + "f", d);
+			String s = Grisu.fmt.doubleToStringFixed(d, decimals);
+			assertEquals(sd, s);
+		}
+	}
+
+	@Test
+	public void test_fixed_offset() {
+		byte[] buf = new byte[64];
+		buf[0] = 'x';
+		int len = Grisu.fmt.doubleToBytesFixed(buf, 1, 42.125, 2);
+		assertEquals("x42.13", new String(buf, 0, len + 1));
+	}
+	@Test
+	public void test_lowprec() {
+		assertEquals("12.345", Grisu.fmt.doubleToString(12.345));
+		assertEquals("0.0075", Grisu.fmt.doubleToString(0.0075));
+		assertEquals("1234567.891", Grisu.fmt.doubleToString(1234567.891));
+
+		Random r = new Random(42);
+		for (int i = 0; i < 10000; ++i) {
+			BigDecimal bd = BigDecimal.valueOf(1 + r.nextInt(10000000), r.nextInt(8)).stripTrailingZeros();
+			String sd = bd.scale() > 0 ? bd.toPlainString() : bd.toBigInteger() + ".0";
+			String s = Grisu.fmt.doubleToString(bd.doubleValue());
+			assertEquals(sd, s);
+		}
+	}
+	@Test
+	public void test_shortest() {
+		assertEquals("1e+23", Grisu.shortest_fmt.doubleToString(1e23));
+		assertEquals("5e-324", Grisu.shortest_fmt.doubleToString(5e-324));
+		assertEquals("1e-323", Grisu.shortest_fmt.doubleToString(1e-323));
+		assertEquals("9.223372036854776e+18", Grisu.shortest_fmt.doubleToString(0x1p63));
+		assertEquals("0.29999999", Grisu.shortest_fmt.doubleToString(0.29999999));
+		assertEquals("1.7976931348623157e+308", Grisu.shortest_fmt.doubleToString(Double.MAX_VALUE));
+		assertEquals("123.453", Grisu.shortest_fmt.doubleToString(123.453));
+		assertEquals("-3.178126551374774e+18", Grisu.shortest_fmt.doubleToString(-3.1781265513747738E18));
+	}
+
+	@Test
+	public void test_shortest_subnormal() {
+		// Double.toString gives 4.9E-323 and 9.9E-323 for its 2 digit minimum
+		assertEquals("5e-323", Grisu.shortest_fmt.doubleToString(Double.longBitsToDouble(10)));
+		assertEquals("1e-322", Grisu.shortest_fmt.doubleToString(Double.longBitsToDouble(20)));
+		assertEquals("1e-44", Grisu.shortest_fmt.floatToString(Float.intBitsToFloat(7)));
+
+		// no longer than the fewest digits BigDecimal can round to and read back
+		for (long bits = 1; bits < 5000; ++bits) {
+			double d = Double.longBitsToDouble(bits);
+			String s = Grisu.shortest_fmt.doubleToString(d);
+			assertEquals(d, Double.parseDouble(s), 0.0);
+			assertEquals(s, fewestDigits(d), digits(s));
+		}
+		for (int bits = 1; bits < 5000; ++bits) {
+			float f = Float.intBitsToFloat(bits);
+			String s = Grisu.shortest_fmt.floatToString(f);
+			assertEquals(f, Float.parseFloat(s), 0.0f);
+		}
+	}
+
+	private static int fewestDigits(double d) {
+		BigDecimal exact = new BigDecimal(d);
+		for (int p = 1; ; ++p) {
+			if (exact.round(new MathContext(p, RoundingMode.HALF_EVEN)).doubleValue() == d)
+				return p;
+		}
+	}
+
+	private static int digits(String s) {
+		return InstrumentedGrisu.significantDigits(s.getBytes(), 0, s.length(), (byte)'e');
+	}
+
+	@Test
+	public void test_shortest_roundtrip() {
+		Random r = new Random(42);
+		for (int i = 0; i < 100000; ++i) {
+			double d = Double.longBitsToDouble(r.nextLong());
+			if (Double.isNaN(d) || Double.isInfinite(d))
+				continue;
+			String s = Grisu.shortest_fmt.doubleToString(d);
+			assertEquals(d, Double.parseDouble(s), 0.0);
+
+			String g = Grisu.fmt.doubleToString(d);
+			if (Double.parseDouble(g) == d)
+				assertTrue(s.length() <= g.length());
+		}
+	}
+	@Test
+	public void test_bigints_exp() {
+		assertEquals("1e+16", Grisu.fmt.doubleToString(1e16));
+		assertEquals("1e+17", Grisu.fmt.doubleToString(1e17));
+		assertEquals("1.5e+17", Grisu.fmt.doubleToString(1.5e17));
+		assertEquals("-1.2345e+19", Grisu.fmt.doubleToString(-1.2345e19));
+		assertEquals("1.5e+3", new Grisu(0, 0, 'e').doubleToString(1500));
+		assertEquals("1.505e+4", new Grisu(0, 0, 'e').doubleToString(15050));
+		assertEquals("1234567890123456.0", Grisu.fmt.doubleToString(1234567890123456.0));
+	}
+
+	@Test
+	public void test_npow10s() {
+		for (int i = -323; i <= -21; ++i) {
+			String sd = "-1e" + i;
+			double d = Double.parseDouble(sd);
+			String s = Grisu.fmt.doubleToString(d);
+			assertEquals(sd, s);
+		}
+	}
+
+	@Test
+	public void test_float() {
+		assertEquals("0.1", Grisu.fmt.floatToString(0.1f));
+		assertEquals("0.33333334", Grisu.fmt.floatToString(1.0f / 3));
+		assertEquals("16777216.0", Grisu.fmt.floatToString(16777216f));
+		assertEquals("-123.456", Grisu.fmt.floatToString(-123.456f));
+		assertEquals("3.4028235e+38", Grisu.fmt.floatToString(Float.MAX_VALUE));
+		assertEquals("1e-45", Grisu.fmt.floatToString(Float.MIN_VALUE));
+		assertEquals("-1e-37", Grisu.fmt.floatToString(-1e-37f));
+		assertEquals("0.0", Grisu.fmt.floatToString(0f));
+		assertEquals("NaN", Grisu.fmt.floatToString(Float.NaN));
+		assertEquals("-Infinity", Grisu.fmt.floatToString(Float.NEGATIVE_INFINITY));
+	}
+
+	@Test
+	public void test_float_roundtrip() {
+		Random r = new Random(42);
+		for (int i = 0; i < 100000; ++i) {
+			float f = Float.intBitsToFloat(r.nextInt());
+			if (Float.isNaN(f) || Float.isInfinite(f))
+				continue;
+			String s = Grisu.fmt.floatToString(f);
+			assertEquals(f, Float.parseFloat(s), 0.0);
+		}
+	}
+	@Test
+	public void test_bytebuffer() {
+		for (ByteBuffer bb : new ByteBuffer[] { ByteBuffer.allocate(64), ByteBuffer.allocateDirect(64) }) {
+			bb.put((byte) '[');
+			int len = Grisu.fmt.doubleToBytes(bb, -12.345);
+			bb.put((byte) ',');
+			Grisu.fmt.doubleToBytes(bb, 1e300);
+			assertEquals(7, len);
+
+			int len2 = Grisu.fmt.doubleToBytes(bb, 40, 0.5);
+			assertEquals(3, len2);
+			assertEquals((byte) '5', bb.get(42));
+			assertEquals(15, bb.position());
+
+			byte[] out = new byte[bb.position()];
+			bb.flip();
+			bb.get(out);
+			assertEquals("[-12.345,1e+300", new String(out));
+		}
+	}
+
+	@Test(expected = BufferOverflowException.class)
+	public void test_bytebuffer_overflow() {
+		ByteBuffer bb = ByteBuffer.allocateDirect(8);
+		Grisu.fmt.doubleToBytes(bb, 123.456789);
+	}
+
+	@Test
+	public void test_bytebuffer_tail() {
+		// less than longest_double_output left in a heap buffer
+		ByteBuffer bb = ByteBuffer.allocate(10);
+		bb.position(4);
+		assertEquals(5, Grisu.fmt.doubleToBytes(bb, 12.25));
+		assertEquals(9, bb.position());
+		assertEquals("12.25", new String(bb.array(), 4, 5));
+	}
+	@Test
+	public void test_bytebuffer_slice() {
+		byte[] backing = new byte[64];
+		ByteBuffer whole = ByteBuffer.wrap(backing);
+		whole.position(16);
+		ByteBuffer bb = whole.slice();
+		assertEquals(16, bb.arrayOffset());
+
+		assertEquals(4, Grisu.fmt.doubleToBytes(bb, 2, 2.25));
+		assertEquals("2.25", new String(backing, 18, 4));
+
+		try {
+			Grisu.fmt.doubleToBytes(bb, -8, 2.25);
+			Assert.fail();
+		}
+		catch (IndexOutOfBoundsException e) {
+			// nothing written before the slice
+		}
+		for (int i = 0; i < 16; ++i)
+			assertEquals(0, backing[i]);
+	}
+
+	@Test
+	public void test_bytebuffer_wide() {
+		// 33 bytes in plain notation, more than longest_double_output
+		Grisu wide = new Grisu(40, 40, 'e');
+		double d = 1.2345678901234567e-15;
+		String text = "0.0000000000000012345678901234568";
+
+		byte[] backing = new byte[64];
+		ByteBuffer bb = ByteBuffer.wrap(backing);
+		bb.position(30).limit(56);
+		try {
+			wide.doubleToBytes(bb, d);
+			Assert.fail();
+		}
+		catch (BufferOverflowException e) {
+			assertEquals(30, bb.position());
+		}
+		try {
+			wide.doubleToBytes(bb, 30, d);
+			Assert.fail();
+		}
+		catch (IndexOutOfBoundsException e) {
+			// nothing past the limit either way
+		}
+		for (int i = 0; i < backing.length; ++i)
+			assertEquals(0, backing[i]);
+
+		bb.limit(64);
+		assertEquals(33, wide.doubleToBytes(bb, d));
+		assertEquals(text, new String(backing, 30, 33));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(40);
+		assertEquals(33, wide.doubleToBytes(direct, d));
+		assertEquals(33, wide.doubleToBytes(direct, 2, d));
+		byte[] out = new byte[33];
+		direct.position(2);
+		direct.get(out);
+		assertEquals(text, new String(out));
+	}
+
+	@Test
+	public void test_array() {
+		double[] src = { 1.5, -2.0, 0.125, 1e300, Double.NaN, 12.345 };
+		byte[] buf = new byte[256];
+		long res = Grisu.fmt.formatArray(src, 0, src.length, (byte) ',', buf, 1);
+		assertEquals(src.length, StuffedPair.cdr(res));
+		assertEquals("1.5,-2.0,0.125,1e+300,NaN,12.345", new String(buf, 1, StuffedPair.car(res)));
+
+		res = Grisu.fmt.formatArray(src, 2, 2, (byte) ',', buf, 0);
+		assertEquals(0, StuffedPair.car(res));
+		assertEquals(2, StuffedPair.cdr(res));
+	}
+
+	@Test
+	public void test_array_chunks() {
+		Random r = new Random(42);
+		double[] src = new double[1000];
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < src.length; ++i) {
+			src[i] = r.nextGaussian() * 1000;
+			sb.append(i == 0 ? "" : ";").append(Grisu.fmt.doubleToString(src[i]));
+		}
+
+		byte[] buf = new byte[100];
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < src.length;) {
+			long res = Grisu.fmt.formatArray(src, i, src.length, (byte) ';', buf, 0);
+			assertTrue(StuffedPair.cdr(res) > i);
+			out.append(new String(buf, 0, StuffedPair.car(res)));
+			i = StuffedPair.cdr(res);
+		}
+		assertEquals(sb.toString(), out.toString());
+	}
+
+	@Test
+	public void test_array_wide() {
+		Grisu wide = new Grisu(40, 40, 'e');
+		double[] src = { 1.2345678901234567e-15, 1.5, 2.5e-20 };
+
+		// not even room for one value, so nothing and the same index back
+		long res = wide.formatArray(src, 0, src.length, (byte) ',', new byte[30], 0);
+		assertEquals(0, StuffedPair.car(res));
+		assertEquals(0, StuffedPair.cdr(res));
+
+		byte[] buf = new byte[wide.longest_output + 1];
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < src.length;) {
+			res = wide.formatArray(src, i, src.length, (byte) ',', buf, 0);
+			assertEquals(i + 1, StuffedPair.cdr(res));
+			out.append(new String(buf, 0, StuffedPair.car(res)));
+			i = StuffedPair.cdr(res);
+		}
+		assertEquals("0.0000000000000012345678901234568,1.5,0.000000000000000000025", out.toString());
+	}
+
+	@Test
+	public void test_append() throws Exception {
+		Random r = new Random(13);
+		StringBuilder sb = new StringBuilder("x");
+		StringBuffer sbuf = new StringBuffer();
+		StringWriter sw = new StringWriter();
+		CharBuffer cb = CharBuffer.allocate(100000);
+		StringBuilder want = new StringBuilder("x");
+		for (int i = 0; i < 2000; ++i) {
+			double d = Double.longBitsToDouble(r.nextLong());
+			String s = Grisu.fmt.doubleToString(d);
+			want.append(s).append(',');
+			Grisu.fmt.appendDouble(sb, d).append(',');
+			Grisu.fmt.appendDouble((Appendable) sbuf, d).append(',');
+			Grisu.fmt.appendDouble(sw, d).append(',');
+			Grisu.fmt.appendDouble(cb, d).append(',');
+		}
+		assertEquals(want.toString(), sb.toString());
+		assertEquals(want.substring(1), sbuf.toString());
+		assertEquals(want.substring(1), sw.toString());
+		cb.flip();
+		assertEquals(want.substring(1), cb.toString());
+	}
+
+	@Test
+	public void test_append_wide() throws Exception {
+		Grisu wide = new Grisu(40, 40, 'e');
+		String text = "0.0000000000000012345678901234568";
+		double d = 1.2345678901234567e-15;
+		assertEquals(text, wide.doubleToString(d));
+		assertEquals(text, wide.doubleToString(d, new byte[wide.longest_output]));
+		assertEquals(text, wide.appendDouble(new StringBuilder(), d).toString());
+		assertEquals(text, wide.appendDouble(new StringWriter(), d).toString());
+	}
+
+	@Test
+	public void test_stateless() throws Exception {
+		Random r = new Random(17);
+		byte[] scratch = new byte[Grisu.longest_double_output];
+		for (int i = 0; i < 10000; ++i) {
+			double d = Double.longBitsToDouble(r.nextLong());
+			String s = Grisu.fmt.doubleToString(d);
+			assertEquals(s, Grisu.fmt.doubleToString(d, scratch));
+			assertEquals(s, Grisu.fmt.doubleToStringStateless(d));
+			float f = Float.intBitsToFloat(r.nextInt());
+			assertEquals(Grisu.fmt.floatToString(f), Grisu.fmt.floatToString(f, scratch));
+		}
+	}
+
+	@Test
+	public void test_stateless_wide() throws Exception {
+		// the pool is shared, so narrow and wide formatters take turns on a slot
+		Grisu wide = new Grisu(40, 40, 'e');
+		double d = 1.2345678901234567e-15;
+		for (int i = 0; i < 100; ++i) {
+			assertEquals("1.2345678901234568e-15", Grisu.fmt.doubleToStringStateless(d));
+			assertEquals("0.0000000000000012345678901234568", wide.doubleToStringStateless(d));
+			assertEquals(wide.floatToString(1.2345678e-15f), wide.floatToString(1.2345678e-15f, new byte[wide.longest_output]));
+		}
+	}
+
+	private static String longString(long v, boolean unsigned) {
+		byte[] b = new byte[Grisu.longest_long_output];
+		int n = unsigned ? Grisu.unsignedLongToBytes(b, 0, v) : Grisu.longToBytes(b, 0, v);
+		return new String(b, 0, n);
+	}
+
+	private static String intString(int v, boolean unsigned) {
+		byte[] b = new byte[Grisu.longest_long_output + 3];
+		int n = unsigned ? Grisu.unsignedIntToBytes(b, 3, v) : Grisu.intToBytes(b, 3, v);
+		return new String(b, 3, n);
+	}
+
+	@Test
+	public void test_integers() {
+		long[] edges = { 0, 1, -1, 9, 10, -10, 99, 100, 999999999, 1000000000, 99999999999999999L,
+				Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for (long v : edges) {
+			assertEquals(Long.toString(v), longString(v, false));
+			assertEquals(Long.toUnsignedString(v), longString(v, true));
+			assertEquals(Integer.toString((int) v), intString((int) v, false));
+			assertEquals(Integer.toUnsignedString((int) v), intString((int) v, true));
+		}
+
+		long p = 1;
+		for (int i = 0; i < 19; ++i, p *= 10) {
+			assertEquals(Long.toString(p - 1), longString(p - 1, false));
+			assertEquals(Long.toString(-p), longString(-p, false));
+		}
+
+		Random r = new Random(23);
+		for (int i = 0; i < 100000; ++i) {
+			long v = r.nextLong() >> r.nextInt(64);
+			assertEquals(Long.toString(v), longString(v, false));
+			assertEquals(Long.toUnsignedString(v), longString(v, true));
+			assertEquals(Integer.toString((int) v), intString((int) v, false));
+			assertEquals(Integer.toUnsignedString((int) v), intString((int) v, true));
+		}
+	}
+
+	private static String decimalString(Grisu g, long unscaled, int scale, boolean strip) {
+		byte[] b = new byte[Grisu.longest_decimal_output + 1];
+		int n = g.decimalToBytes(b, 1, unscaled, scale, strip);
+		return new String(b, 1, n);
+	}
+
+	@Test
+	public void test_decimal() {
+		Grisu g = Grisu.fmt;
+		assertEquals("123.45", decimalString(g, 12345, 2, false));
+		assertEquals("-123.45", decimalString(g, -12345, 2, true));
+		assertEquals("1.50", decimalString(g, 150, 2, false));
+		assertEquals("1.5", decimalString(g, 150, 2, true));
+		assertEquals("1.0", decimalString(g, 100, 2, true));
+		assertEquals("0.05", decimalString(g, 5, 2, false));
+		assertEquals("0.00", decimalString(g, 0, 2, false));
+		assertEquals("0.0", decimalString(g, 0, 2, true));
+		assertEquals("0.0", decimalString(g, 0, -3, false));
+		assertEquals("1500.0", decimalString(g, 15, -2, false));
+		assertEquals("42.0", decimalString(g, 42, 0, false));
+		assertEquals("1e-12", decimalString(g, 1, 12, false));
+		assertEquals("1.5e-11", decimalString(g, 150, 13, true));
+		assertEquals("-9.223372036854775808e+18", decimalString(g, Long.MIN_VALUE, 0, false));
+		assertEquals("9.223372036854775807e-962", decimalString(g, Long.MAX_VALUE, Grisu.max_decimal_scale, false));
+
+		try {
+			decimalString(g, 1, Grisu.max_decimal_scale + 1, false);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		// wide enough that every long and scale up to 18 is plain
+		Grisu wide = new Grisu(19, 19, 'e');
+		Random r = new Random(29);
+		for (int i = 0; i < 100000; ++i) {
+			long v = r.nextLong() >> r.nextInt(64);
+			int scale = 1 + r.nextInt(18);
+			BigDecimal bd = BigDecimal.valueOf(v, scale);
+			assertEquals(bd.toPlainString(), decimalString(wide, v, scale, false));
+
+			String stripped = bd.stripTrailingZeros().toPlainString();
+			if (stripped.indexOf('.') < 0)
+				stripped += ".0";
+			assertEquals(stripped, decimalString(wide, v, scale, true));
+		}
+	}
 }
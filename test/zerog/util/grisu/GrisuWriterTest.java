@@ -0,0 +1,119 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GrisuWriterTest {
+
+    private static String expected( double[] v, long[] l ) {
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0; i < v.length; ++i )
+            sb.append( Grisu.fmt.doubleToString( v[i] )).append( ' ' ).append( l[i] ).append( '\n' );
+        return sb.toString();
+    }
+
+    private static void write( GrisuWriter w, double[] v, long[] l ) throws Exception {
+        for( int i = 0; i < v.length; ++i ) {
+            w.writeDouble( v[i] );
+            w.writeByte( ' ' );
+            w.writeLong( l[i] );
+            w.writeByte( '\n' );
+        }
+        w.close();
+    }
+
+    @Test
+    public void test_stream_and_channel() throws Exception {
+        Random r = new Random( 3 );
+        double[] v = new double[5000];
+        long[] l = new long[v.length];
+        for( int i = 0; i < v.length; ++i ) {
+            v[i] = Double.longBitsToDouble( r.nextLong() );
+            l[i] = r.nextLong() >> r.nextInt( 64 );
+        }
+        l[0] = Long.MIN_VALUE;
+        l[1] = Long.MAX_VALUE;
+        l[2] = 0;
+
+        String want = expected( v, l );
+        for( int size : new int[] { GrisuWriter.min_buffer_size, 100, 64 * 1024 } ) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            write( new GrisuWriter( bos, Grisu.fmt, size ), v, l );
+            assertEquals( want, bos.toString() );
+
+            bos = new ByteArrayOutputStream();
+            write( new GrisuWriter( Channels.newChannel( bos ), Grisu.fmt, size ), v, l );
+            assertEquals( want, bos.toString() );
+        }
+    }
+
+    @Test
+    public void test_doubles_and_bytes() throws Exception {
+        double[] v = new double[1000];
+        for( int i = 0; i < v.length; ++i )
+            v[i] = i / 7.0;
+
+        byte[] out = new byte[64 * 1024];
+        long res = Grisu.fmt.formatArray( v, 0, v.length, (byte)',', out, 0 );
+        String want = new String( out, 0, StuffedPair.car( res ));
+
+        for( int size : new int[] { GrisuWriter.min_buffer_size, 100, 64 * 1024 } ) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            GrisuWriter w = new GrisuWriter( Channels.newChannel( bos ), Grisu.fmt, size );
+            w.writeDoubles( v, 0, v.length, (byte)',' );
+            w.writeBytes( "|hello|".getBytes(), 1, 5 );
+            w.writeBytes( out, 0, StuffedPair.car( res ));
+            w.close();
+            assertEquals( want + "hello" + want, bos.toString() );
+        }
+    }
+
+    @Test
+    public void test_wide_layout() throws Exception {
+        Grisu wide = new Grisu( 40, 40, 'e' );
+        assertEquals( wide.longest_output + 1, GrisuWriter.minBufferSize( wide ));
+
+        try {
+            new GrisuWriter( new ByteArrayOutputStream(), wide, 26 );
+            fail();
+        }
+        catch( IllegalArgumentException e ) {
+            // 26 is enough for the default layout only
+        }
+
+        Random r = new Random( 5 );
+        double[] v = new double[2000];
+        StringBuilder want = new StringBuilder();
+        for( int i = 0; i < v.length; ++i ) {
+            v[i] = Math.scalb( r.nextDouble(), -(i % 120) );
+            want.append( want.length() == 0 ? "" : "," ).append( wide.doubleToString( v[i] ));
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        GrisuWriter w = new GrisuWriter( bos, wide, GrisuWriter.minBufferSize( wide ));
+        for( int i = 0; i < v.length; ++i ) {
+            if( i > 0 )
+                w.writeByte( ',' );
+            w.writeDouble( v[i] );
+        }
+        w.close();
+        assertEquals( want.toString(), bos.toString() );
+
+        bos = new ByteArrayOutputStream();
+        w = new GrisuWriter( bos, wide, GrisuWriter.minBufferSize( wide ));
+        w.writeDoubles( v, 0, v.length, (byte)',' );
+        w.close();
+        assertEquals( want.toString(), bos.toString() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_small_buffer() {
+        new GrisuWriter( new ByteArrayOutputStream(), Grisu.fmt, 10 );
+    }
+}
@@ -0,0 +1,74 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class InstrumentedGrisuTest {
+
+    private static String format( Grisu g, double d ) {
+        byte[] b = new byte[Grisu.longest_double_output];
+        return new String( b, 0, g.doubleToBytes( b, 0, d ));
+    }
+
+    @Test
+    public void test_paths() {
+        InstrumentedGrisu g = InstrumentedGrisu.of( Grisu.fmt );
+
+        assertEquals( "NaN", format( g, Double.NaN ));
+        assertEquals( "0.0", format( g, -0.0 ));
+        assertEquals( "-Infinity", format( g, Double.NEGATIVE_INFINITY ));
+        assertEquals( 3, g.special.sum() );
+
+        assertEquals( "1500.0", format( g, 1500 ));
+        assertEquals( 1, g.quickpath.sum() );
+        assertEquals( 1, g.fixed.sum() );
+
+        assertEquals( "0.25", format( g, 0.25 ));
+        assertEquals( "1.5", format( g, 1.5 ));
+        assertEquals( 3, g.quickpath.sum() + g.lowprec.sum() );
+
+        assertEquals( "1.2345678901234567e-200", format( g, 1.2345678901234567e-200 ));
+        assertEquals( 1, g.engine_path.sum() );
+        assertEquals( 1, g.exponent.sum() );
+        assertEquals( 3, g.fixed.sum() );
+
+        g.reset();
+        assertEquals( 0, g.special.sum() + g.quickpath.sum() + g.lowprec.sum() + g.engine_path.sum() + g.exponent.sum() + g.fixed.sum() );
+    }
+
+    @Test
+    public void test_same_output() {
+        InstrumentedGrisu g2 = InstrumentedGrisu.of( Grisu.fmt );
+        InstrumentedGrisu sh = InstrumentedGrisu.of( Grisu.shortest_fmt );
+        Random r = new Random( 5 );
+        for( int i = 0; i < 100000; ++i ) {
+            double d = i % 2 == 0 ? Double.longBitsToDouble( r.nextLong() ) : Math.round( r.nextDouble() * 1e6 ) / 1e3;
+            assertEquals( format( Grisu.fmt, d ), format( g2, d ));
+            assertEquals( format( Grisu.shortest_fmt, d ), format( sh, d ));
+        }
+
+        long total = g2.special.sum() + g2.quickpath.sum() + g2.lowprec.sum() + g2.engine_path.sum();
+        assertEquals( 100000, total );
+        assertEquals( total - g2.special.sum(), g2.exponent.sum() + g2.fixed.sum() );
+    }
+
+    @Test
+    public void test_fixed_mode_paths() {
+        // fixed mode takes the shortest paths whatever the engine
+        InstrumentedGrisu g = InstrumentedGrisu.of( Grisu.fmt );
+        assertEquals( "1.50", g.doubleToStringFixed( 1.5, 2 ));
+        assertEquals( "0.33", g.doubleToStringFixed( 1.0 / 3, 2 ));
+        assertEquals( 2, g.quickpath.sum() + g.lowprec.sum() + g.engine_path.sum() );
+        assertEquals( 0, g.exponent.sum() + g.fixed.sum() );
+
+        // and its specials are counted the same as the shortest layout's
+        assertEquals( "NaN", g.doubleToStringFixed( Double.NaN, 2 ));
+        assertEquals( "-Infinity", g.doubleToStringFixed( Double.NEGATIVE_INFINITY, 2 ));
+        assertEquals( "-0.00", g.doubleToStringFixed( -0.0, 2 ));
+        assertEquals( 3, g.special.sum() );
+        assertEquals( 2, g.quickpath.sum() + g.lowprec.sum() + g.engine_path.sum() );
+    }
+}
@@ -0,0 +1,63 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class JsonWriterTest {
+
+    private static String text( JsonWriter w ) throws Exception {
+        return new String( w.buffer(), 0, w.length(), "UTF-8" );
+    }
+
+    @Test
+    public void test_document() throws Exception {
+        JsonWriter w = new JsonWriter( Grisu.fmt, "null".getBytes(), "null".getBytes(), "null".getBytes(), 1 );
+        w.beginObject()
+            .name( "a" ).value( 1.5 )
+            .name( "b" ).value( Long.MIN_VALUE )
+            .name( "c" ).beginArray().value( 0L ).value( -7L ).value( 1e23 ).endArray()
+            .name( "d" ).beginObject().endObject()
+            .name( "e" ).beginArray().endArray()
+            .name( "f" ).value( true ).name( "g" ).nullValue()
+            .name( "h" ).value( Double.NaN )
+        .endObject();
+
+        assertEquals( "{\"a\":1.5,\"b\":-9223372036854775808,\"c\":[0,-7,1e+23],\"d\":{},\"e\":[],\"f\":true,\"g\":null,\"h\":null}", text( w ));
+
+        w.reset().array( new long[] { 1, 2, 3 }, 0, 3 );
+        assertEquals( "[1,2,3]", text( w ));
+    }
+
+    @Test
+    public void test_tokens() throws Exception {
+        JsonWriter w = new JsonWriter( Grisu.fmt, "\"NaN\"".getBytes(), "1e999".getBytes(), "-1e999".getBytes(), 16 );
+        w.array( new double[] { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.25 }, 0, 4 );
+        assertEquals( "[\"NaN\",1e999,-1e999,-0.25]", text( w ));
+    }
+
+    @Test
+    public void test_strings() throws Exception {
+        JsonWriter w = new JsonWriter();
+        w.beginArray().value( "q\"b\\\n\t\u0001" ).value( "\u00e9\u20ac\ud83d\ude00" ).value( (String)null ).endArray();
+        assertEquals( "[\"q\\\"b\\\\\\n\\t\\u0001\",\"\u00e9\u20ac\ud83d\ude00\",null]", text( w ));
+    }
+
+    @Test
+    public void test_wide_layout() throws Exception {
+        Grisu wide = new Grisu( 40, 40, 'e' );
+        JsonWriter w = new JsonWriter( wide, "null".getBytes(), "null".getBytes(), "null".getBytes(), 1 );
+        w.array( new double[] { 1.2345678901234567e-15, 2.5e-20, 1e39 }, 0, 3 );
+        assertEquals( "[0.0000000000000012345678901234568,0.000000000000000000025,1000000000000000000000000000000000000000.0]", text( w ));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_unbalanced() {
+        new JsonWriter().beginArray().endObject();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_exp_char() {
+        new JsonWriter( new Grisu( 16, 10, 'x' ), null, null, null, 16 );
+    }
+}
@@ -0,0 +1,49 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MappedGrisuWriterTest {
+
+    @Test
+    public void test_mapped() throws Exception {
+        Random r = new Random( 5 );
+        double[] v = new double[3000];
+        for( int i = 0; i < v.length; ++i )
+            v[i] = Double.longBitsToDouble( r.nextLong() );
+
+        StringBuilder sb = new StringBuilder();
+        for( int i = 0; i < v.length; ++i )
+            sb.append( Grisu.fmt.doubleToString( v[i] )).append( ' ' ).append( (long)i - 1500 ).append( '\n' );
+        for( int i = 0; i < v.length; ++i )
+            sb.append( Grisu.fmt.doubleToString( v[i] )).append( i == v.length - 1 ? "" : "," );
+        String want = sb.toString();
+
+        Path p = Files.createTempFile( "grisu", ".txt" );
+        try {
+            for( long window : new long[] { 4096, 1 << 20 } ) {
+                MappedGrisuWriter w = new MappedGrisuWriter( p, Grisu.fmt, 1000, window );
+                for( int i = 0; i < v.length; ++i ) {
+                    w.writeDouble( v[i] );
+                    w.writeByte( ' ' );
+                    w.writeLong( i - 1500 );
+                    w.writeByte( '\n' );
+                }
+                w.writeDoubles( v, 0, v.length, (byte)',' );
+                assertEquals( want.length(), w.length() );
+                w.close();
+                w.close();
+
+                assertEquals( want.length(), Files.size( p ));
+                assertEquals( want, new String( Files.readAllBytes( p ), "ISO-8859-1" ));
+            }
+        } finally {
+            Files.delete( p );
+        }
+    }
+}
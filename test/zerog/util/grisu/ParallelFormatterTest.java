@@ -0,0 +1,96 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class ParallelFormatterTest {
+
+    private static double[] values( int n ) {
+        Random r = new Random( 7 );
+        double[] v = new double[n];
+        for( int i = 0; i < n; ++i )
+            v[i] = Double.longBitsToDouble( r.nextLong() );
+        return v;
+    }
+
+    private static String sequential( double[] v, int from, int to ) {
+        return sequential( Grisu.fmt, v, from, to );
+    }
+
+    private static String sequential( Grisu fmt, double[] v, int from, int to ) {
+        byte[] out = new byte[(int)new ParallelFormatter( fmt ).maxOutputLength( to - from ) + 1];
+        long res = fmt.formatArray( v, from, to, (byte)',', out, 0 );
+        assertEquals( to, StuffedPair.cdr( res ));
+        return new String( out, 0, StuffedPair.car( res ));
+    }
+
+    @Test
+    public void test_array() {
+        ForkJoinPool pool = new ForkJoinPool( 4 );
+        try {
+            double[] v = values( 10000 );
+            for( int chunk : new int[] { 1, 7, 100, 4096, 20000 } ) {
+                ParallelFormatter pf = new ParallelFormatter( Grisu.fmt, pool, chunk );
+                for( int[] range : new int[][] { { 0, 10000 }, { 13, 9001 }, { 5, 5 }, { 5, 6 } } ) {
+                    byte[] out = new byte[(int)pf.maxOutputLength( range[1] - range[0] ) + 3];
+                    int len = pf.formatArray( v, range[0], range[1], (byte)',', out, 3 );
+                    assertEquals( sequential( v, range[0], range[1] ), new String( out, 3, len ));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test_channel() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool( 3 );
+        try {
+            double[] v = values( 10000 );
+            for( int chunk : new int[] { 1, 100, 333, 20000 } ) {
+                ParallelFormatter pf = new ParallelFormatter( Grisu.fmt, pool, chunk );
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                long n = pf.writeArray( v, 17, 9999, (byte)',', Channels.newChannel( bos ));
+                assertEquals( bos.size(), n );
+                assertEquals( sequential( v, 17, 9999 ), bos.toString());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test_wide_layout() throws Exception {
+        // plain notation down to 1e-40, up to 80 bytes a value
+        Grisu wide = new Grisu( 40, 40, 'e' );
+        Random r = new Random( 11 );
+        double[] v = new double[5000];
+        for( int i = 0; i < v.length; ++i )
+            v[i] = Math.scalb( r.nextDouble(), -(i % 120) );
+
+        ForkJoinPool pool = new ForkJoinPool( 3 );
+        try {
+            ParallelFormatter pf = new ParallelFormatter( wide, pool, 64 );
+            byte[] out = new byte[(int)pf.maxOutputLength( v.length )];
+            int len = pf.formatArray( v, 0, v.length, (byte)',', out, 0 );
+            assertEquals( sequential( wide, v, 0, v.length ), new String( out, 0, len ));
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            pf.writeArray( v, 0, v.length, (byte)',', Channels.newChannel( bos ));
+            assertEquals( sequential( wide, v, 0, v.length ), bos.toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void test_small_buffer() {
+        new ParallelFormatter( Grisu.fmt ).formatArray( values( 10 ), 0, 10, (byte)',', new byte[100], 0 );
+    }
+}
@@ -0,0 +1,315 @@
+package zerog.util.grisu;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Checks that what a formatter prints reads back as the same double and
+ * how often it uses more digits than the shortest output that does. The
+ * values are given by index so the work splits freely across a
+ * {@link ForkJoinPool}:
+ * <ul>
+ * <li>every float, or every step-th, widened to a double</li>
+ * <li>any number of random bit patterns from a seed, the same ones for the same seed however it splits</li>
+ * <li>the boundaries: both ends and the middle of the significand at every
+ *     exponent, so every power of two, and every power of ten with its neighbours</li>
+ * </ul>
+ * Shortest is checked on the printed text itself rather than against another
+ * formatter: with k significant digits printed, the neighbours with k - 1
+ * digits either side are parsed, and if one reads back the output was longer
+ * than it had to be. Checking only the two neighbours is enough, since the
+ * values that read back as d are an interval around the printed value, so
+ * if any k - 1 digit value is in it the nearer one on that side is too.
+ * Digits are counted between the first and last nonzero digit, so the layout
+ * doesn't matter. Zero reads back as zero whatever its sign, since -0.0
+ * prints as 0.0.
+ * <p>
+ * A full run is too long for the unit tests, which do a thinned one, so it
+ * is run by hand after changes to the digit generation:
+ * <pre>
+ * mvn -pl grisu test-compile
+ * java -cp grisu/target/classes:grisu/target/test-classes zerog.util.grisu.RoundTripVerifier \
+ *     [-engine grisu2|shortest] [-floats] [-random 4000000000] [-seed 1] [-boundaries] [-threads n] [-strict]
+ * </pre>
+ * With no modes it does the boundaries and 10^8 random values. With
+ * {@code -strict} any value that doesn't read back is an exit status of 1.
+ */
+public class RoundTripVerifier {
+
+    static final int chunk_size = 1 << 16;
+
+    /**
+     * What one run found.
+     */
+    public static final class Report {
+
+        public final String name;
+        public long values;
+        public long failures;
+        public long non_shortest;
+        public long extra_digits;
+        public long nanos;
+        public final List<Long> examples = new ArrayList<>();
+
+        Report( String name ) {
+
+            this.name = name;
+        }
+
+        void add( Report r ) {
+
+            values += r.values;
+            failures += r.failures;
+            non_shortest += r.non_shortest;
+            extra_digits += r.extra_digits;
+            for( int i = 0; i < r.examples.size() && examples.size() < 10; ++i )
+                examples.add( r.examples.get( i ));
+        }
+
+        @Override
+        public String toString() {
+
+            StringBuilder sb = new StringBuilder();
+            sb.append( String.format( "%-12s %,d values in %.1f s, %,.0f/s%n", name, values, nanos / 1e9, values / (nanos / 1e9) ));
+            sb.append( String.format( "%-12s %,d don't read back (%.3g), %,d longer than shortest (%.3g), %,d extra digits%n",
+                    "", failures, (double)failures / values, non_shortest, (double)non_shortest / values, extra_digits ));
+
+            for( long bits : examples ) {
+                double d = Double.longBitsToDouble( bits );
+                sb.append( String.format( "%-12s 0x%016x %s%n", "", bits, Double.toString( d )));
+            }
+
+            return sb.toString();
+        }
+    }
+
+    public final Grisu fmt;
+    public final ForkJoinPool pool;
+
+    public RoundTripVerifier( Grisu fmt, ForkJoinPool pool ) {
+
+        this.fmt = fmt;
+        this.pool = pool;
+    }
+
+    /**
+     * Float bit patterns from {@code from} up to {@code to}, every {@code step}-th.
+     */
+    public Report floats( long from, long to, long step ) {
+
+        return run( "floats", (to - from + step - 1) / step, i -> Double.doubleToRawLongBits( Float.intBitsToFloat( (int)(from + i * step) )));
+    }
+
+    public Report random( long count, long seed ) {
+
+        return run( "random", count, i -> mix( seed + i * 0x9e3779b97f4a7c15L ));
+    }
+
+    public Report boundaries() {
+
+        long[] bits = boundaryBits();
+        return run( "boundaries", bits.length, i -> bits[(int)i] );
+    }
+
+    /**
+     * SplitMix64's finaliser, so value i needs no state from value i - 1.
+     */
+    static long mix( long z ) {
+
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    static long[] boundaryBits() {
+
+        long mask = DiyFp.u_doubleMantissaMask;
+        long half = 1L << (DiyFp.doubleMantissaSize - 1);
+        long[] mantissas = { 0, 1, 2, half - 1, half, half + 1, mask - 1, mask };
+
+        List<Long> out = new ArrayList<>();
+        for( long e = 0; e < 2047; ++e )
+            for( long m : mantissas )
+                out.add( e << DiyFp.doubleMantissaSize | m );
+
+        for( int k = -325; k <= 308; ++k ) {
+            double p = Double.parseDouble( "1e" + k );
+            double lo = p, hi = p;
+            out.add( Double.doubleToRawLongBits( p ));
+            for( int j = 0; j < 3; ++j ) {
+                lo = Math.nextDown( lo );
+                hi = Math.nextUp( hi );
+                out.add( Double.doubleToRawLongBits( lo ));
+                out.add( Double.doubleToRawLongBits( hi ));
+            }
+        }
+
+        long[] bits = new long[out.size() * 2];
+        for( int i = 0; i < out.size(); ++i ) {
+            bits[2 * i] = out.get( i );
+            bits[2 * i + 1] = out.get( i ) | 1L << 63;
+        }
+
+        return bits;
+    }
+
+    /**
+     * The fewest significant digits that read back as {@code d}, found by
+     * dropping digits from the printed text {@code s} while the neighbour
+     * below or above still parses to {@code d}.
+     */
+    static int fewestDigits( String s, double d ) {
+
+        BigDecimal printed = new BigDecimal( s );
+        int p = printed.stripTrailingZeros().precision();
+
+        while( p > 1 && (readsBack( printed, p - 1, RoundingMode.DOWN, d ) || readsBack( printed, p - 1, RoundingMode.UP, d )))
+            --p;
+
+        return p;
+    }
+
+    private static boolean readsBack( BigDecimal printed, int digits, RoundingMode mode, double d ) {
+
+        return printed.round( new MathContext( digits, mode )).doubleValue() == d;
+    }
+
+    Report run( String name, long count, LongUnaryOperator source ) {
+
+        long start = System.nanoTime();
+        Report r = pool.invoke( new Check( name, source, 0, count ));
+        r.nanos = System.nanoTime() - start;
+        return r;
+    }
+
+    private final class Check extends RecursiveTask<Report> {
+
+        private static final long serialVersionUID = 1L;
+
+        final String name;
+        final LongUnaryOperator source;
+        final long from;
+        final long to;
+
+        Check( String name, LongUnaryOperator source, long from, long to ) {
+
+            this.name = name;
+            this.source = source;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Report compute() {
+
+            if( to - from > chunk_size ) {
+
+                long mid = from + (to - from) / 2;
+                Check right = new Check( name, source, mid, to );
+                right.fork();
+                Report r = new Check( name, source, from, mid ).compute();
+                r.add( right.join() );
+                return r;
+            }
+
+            Report r = new Report( name );
+            byte[] buf = new byte[Grisu.longest_double_output];
+
+            for( long i = from; i < to; ++i ) {
+
+                long bits = source.applyAsLong( i );
+                double d = Double.longBitsToDouble( bits );
+
+                int n = fmt.doubleToBytes( buf, 0, d );
+                String s = new String( buf, 0, n, StandardCharsets.ISO_8859_1 );
+                double back = Double.parseDouble( s );
+
+                boolean ok = d != d ? back != back : back == d;
+                if( !ok ) {
+                    r.failures++;
+                    if( r.examples.size() < 10 )
+                        r.examples.add( bits );
+                }
+                else if( d == d && d != 0 && !Double.isInfinite( d )) {
+                    if( fmt.exp_char != 'e' )
+                        s = s.replace( (char)fmt.exp_char, 'e' );
+                    int extra = InstrumentedGrisu.significantDigits( buf, 0, n, fmt.exp_char ) - fewestDigits( s, d );
+                    if( extra > 0 ) {
+                        r.non_shortest++;
+                        r.extra_digits += extra;
+                    }
+                }
+            }
+
+            r.values = to - from;
+            return r;
+        }
+    }
+
+    public static void main( String[] args ) {
+
+        Grisu fmt = Grisu.fmt;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long random = 0, seed = 1;
+        boolean floats = false, bounds = false, strict = false;
+
+        for( int a = 0; a < args.length; ++a ) {
+            switch( args[a] ) {
+                case "-engine": fmt = args[++a].equals( "shortest" ) ? Grisu.shortest_fmt : Grisu.fmt; break;
+                case "-floats": floats = true; break;
+                case "-random": random = Long.parseLong( args[++a] ); break;
+                case "-seed": seed = Long.parseLong( args[++a] ); break;
+                case "-boundaries": bounds = true; break;
+                case "-threads": threads = Integer.parseInt( args[++a] ); break;
+                case "-strict": strict = true; break;
+                default:
+                    System.err.println( "unknown option " + args[a] );
+                    System.exit( 2 );
+            }
+        }
+
+        if( !floats && !bounds && random == 0 ) {
+            bounds = true;
+            random = 100_000_000;
+        }
+
+        RoundTripVerifier v = new RoundTripVerifier( fmt, new ForkJoinPool( threads ));
+        System.out.println( fmt.engine + " on " + threads + " threads" );
+
+        Report total = new Report( "total" );
+        long nanos = 0;
+
+        if( bounds ) {
+            Report r = v.boundaries();
+            System.out.print( r );
+            total.add( r );
+            nanos += r.nanos;
+        }
+        if( random > 0 ) {
+            Report r = v.random( random, seed );
+            System.out.print( r );
+            total.add( r );
+            nanos += r.nanos;
+        }
+        if( floats ) {
+            Report r = v.floats( 0, 1L << 32, 1 );
+            System.out.print( r );
+            total.add( r );
+            nanos += r.nanos;
+        }
+
+        total.nanos = nanos;
+        total.examples.clear();
+        System.out.print( total );
+
+        if( strict && total.failures > 0 )
+            System.exit( 1 );
+    }
+}
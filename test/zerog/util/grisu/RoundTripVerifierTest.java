@@ -0,0 +1,69 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import zerog.util.grisu.RoundTripVerifier.Report;
+
+/**
+ * A thinned run of {@link RoundTripVerifier}, the full one is by hand.
+ */
+public class RoundTripVerifierTest {
+
+    private static final RoundTripVerifier shortest = new RoundTripVerifier( Grisu.shortest_fmt, ForkJoinPool.commonPool() );
+    private static final RoundTripVerifier grisu2 = new RoundTripVerifier( Grisu.fmt, ForkJoinPool.commonPool() );
+
+    @Test
+    public void test_significant_digits() {
+        assertEquals( 0, digits( "0.0" ));
+        assertEquals( 2, digits( "1500.0" ));
+        assertEquals( 3, digits( "-0.00105" ));
+        assertEquals( 4, digits( "1.203e+20" ));
+        assertEquals( 1, digits( "5e-324" ));
+    }
+
+    private static int digits( String s ) {
+        return InstrumentedGrisu.significantDigits( s.getBytes(), 0, s.length(), (byte)'e' );
+    }
+
+    @Test
+    public void test_fewest_digits() {
+        assertEquals( 1, RoundTripVerifier.fewestDigits( "0.1000", 0.1 ));
+        assertEquals( 1, RoundTripVerifier.fewestDigits( "0.10000000000000001", 0.1 ));
+        assertEquals( 17, RoundTripVerifier.fewestDigits( "0.30000000000000004", 0.1 + 0.2 ));
+        assertEquals( 2, RoundTripVerifier.fewestDigits( "-1.5e+20", -1.5e20 ));
+        // Double.toString's 2 digit minimum for subnormals is caught
+        assertEquals( 1, RoundTripVerifier.fewestDigits( "4.9e-323", Double.longBitsToDouble( 10 )));
+        assertEquals( 1, RoundTripVerifier.fewestDigits( "9.9e-323", Double.longBitsToDouble( 20 )));
+        assertEquals( 17, RoundTripVerifier.fewestDigits( "1.7976931348623157e+308", Double.MAX_VALUE ));
+    }
+
+    @Test
+    public void test_shortest_always_round_trips() {
+        assertClean( shortest.boundaries() );
+        assertClean( shortest.random( 200_000, 1 ));
+        assertClean( shortest.floats( 0, 1L << 32, 8191 ));
+    }
+
+    @Test
+    public void test_grisu2() {
+        // Grisu2 is allowed the odd miss, see Grisu.Engine.GRISU2
+        Report r = grisu2.random( 200_000, 1 );
+        assertTrue( r.toString(), r.failures < r.values / 1000 );
+        assertTrue( r.toString(), r.non_shortest < r.values / 100 );
+        // and the shortest check does see those misses
+        assertTrue( r.toString(), r.non_shortest > 0 );
+
+        r = grisu2.boundaries();
+        assertTrue( r.toString(), r.failures < r.values / 1000 );
+    }
+
+    private static void assertClean( Report r ) {
+        assertEquals( r.toString(), 0, r.failures );
+        assertEquals( r.toString(), 0, r.non_shortest );
+    }
+}
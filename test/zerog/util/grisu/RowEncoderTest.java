@@ -0,0 +1,72 @@
+package zerog.util.grisu;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import zerog.util.grisu.RowEncoder.Column;
+
+public class RowEncoderTest {
+
+    private static String encode( RowEncoder e, double[] d, long[] l ) {
+        byte[] out = new byte[e.max_row_length + 5];
+        int len = e.encode( d, l, out, 5 );
+        return new String( out, 5, len );
+    }
+
+    @Test
+    public void test_row() {
+        RowEncoder e = new RowEncoder( Column.fixed( 2 ), Column.integer(), Column.shortest(), Column.scientific(), Column.of( Grisu.fmt ));
+        assertEquals( 4, e.double_columns );
+        assertEquals( 1, e.long_columns );
+
+        assertEquals( "1.50,7,0.1,1.5e+3,123.0\n", encode( e, new double[] { 1.5, 0.1, 1500, 123 }, new long[] { 7 } ));
+        assertEquals( "-0.13,-9223372036854775808,NaN,-2.5e-7,1e+20\n",
+                      encode( e, new double[] { -0.125, Double.NaN, -2.5e-7, 1e20 }, new long[] { Long.MIN_VALUE } ));
+    }
+
+    @Test
+    public void test_tsv() {
+        RowEncoder e = new RowEncoder( (byte)'\t', "\r\n".getBytes(), Column.shortest() );
+        assertEquals( "2.0\r\n", encode( e, new double[] { 2 }, null ));
+
+        e = new RowEncoder( (byte)'\t', "\r\n".getBytes(), Column.fixed( 0 ), Column.shortest() );
+        assertEquals( "3\t0.3\r\n", encode( e, new double[] { 2.5, 0.3 }, null ));
+    }
+
+    @Test
+    public void test_matches_single_calls() {
+        RowEncoder e = new RowEncoder( Column.fixed( 4 ), Column.shortest(), Column.scientific() );
+        Random r = new Random( 11 );
+        byte[] b = new byte[e.max_row_length];
+        for( int i = 0; i < 10000; ++i ) {
+            double[] d = { r.nextDouble() * 1e6, Double.longBitsToDouble( r.nextLong() ), r.nextGaussian() };
+            int n = Grisu.fmt.doubleToBytesFixed( b, 0, d[0], 4 );
+            String want = new String( b, 0, n ) + ",";
+            n = Grisu.shortest_fmt.doubleToBytes( b, 0, d[1] );
+            want += new String( b, 0, n ) + ",";
+            n = RowEncoder.scientific_fmt.doubleToBytes( b, 0, d[2] );
+            want += new String( b, 0, n ) + "\n";
+            assertEquals( want, encode( e, d, null ));
+        }
+    }
+
+    @Test
+    public void test_wide_layout() {
+        Grisu wide = new Grisu( 40, 40, 'e' );
+        RowEncoder e = new RowEncoder( Column.of( wide ), Column.of( wide ));
+        assertEquals( 2 * wide.longest_output + 1 + 1, e.max_row_length );
+
+        // 59 bytes, more than two longest_double_output columns would allow
+        byte[] b = new byte[e.max_row_length];
+        int len = e.encode( new double[] { -1.2345678901234567e-15, 2.5e-20 }, null, b, 0 );
+        assertEquals( "-0.0000000000000012345678901234568,0.000000000000000000025\n", new String( b, 0, len ));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void test_small_buffer() {
+        new RowEncoder( Column.fixed( 2 )).encode( new double[] { 1 }, null, new byte[100], 0 );
+    }
+}
@@ -0,0 +1,200 @@
+package zerog.util.grisu.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes {@code zerog.util.grisu.PowerTables}, the cached powers of ten, from
+ * exact BigInteger arithmetic. The grisu module runs it before compiling, so
+ * the tables are never pasted by hand:
+ * <pre>
+ * java -cp grisu-tools/target/classes zerog.util.grisu.tools.PowerTableGenerator outdir
+ * </pre>
+ * Two kinds of table come out of it:
+ * <ul>
+ * <li>64 bit, the significand rounded to nearest and normalized so the top
+ *     bit is set, with its binary exponent, for any range and step of decimal
+ *     exponents. Grisu2 uses the one from the paper, 10^-348 to 10^340 in
+ *     steps of 8, or with {@code -Dzerog.grisu.densePowers} every power.</li>
+ * <li>126 bit for Schubfach, 10^-k rounded up to 126 bits and split into
+ *     two 63 bit halves.</li>
+ * </ul>
+ */
+public class PowerTableGenerator {
+
+    static final BigInteger two64 = BigInteger.ONE.shiftLeft( 64 );
+    static final BigInteger mask63 = BigInteger.ONE.shiftLeft( 63 ).subtract( BigInteger.ONE );
+
+    /**
+     * The 64 bit significands and binary exponents of 10^k for k from
+     * {@code min} up to {@code max} by {@code step}.
+     */
+    public static final class Table64 {
+
+        public final int min_ten_exp;
+        public final int step;
+        public final long[] u_f;
+        public final int[] e;
+
+        public Table64( int min_ten_exp, int max_ten_exp, int step ) {
+
+            this.min_ten_exp = min_ten_exp;
+            this.step = step;
+
+            int n = (max_ten_exp - min_ten_exp) / step + 1;
+            u_f = new long[n];
+            e = new int[n];
+
+            for( int i = 0; i < n; ++i ) {
+
+                int k = min_ten_exp + i * step;
+                BigInteger f;
+                int be;
+
+                if( k >= 0 ) {
+                    BigInteger p = BigInteger.TEN.pow( k );
+                    int shift = p.bitLength() - 64;
+                    if( shift <= 0 ) {
+                        f = p.shiftLeft( -shift );
+                    }
+                    else {
+                        // round half up on the first bit dropped
+                        f = p.shiftRight( shift - 1 ).add( BigInteger.ONE ).shiftRight( 1 );
+                    }
+                    be = shift;
+                }
+                else {
+                    // 2^s / 10^-k lands in [2^63, 2^64] for this s
+                    BigInteger q = BigInteger.TEN.pow( -k );
+                    int s = 63 + q.bitLength();
+                    f = BigInteger.ONE.shiftLeft( s + 1 ).divide( q ).add( BigInteger.ONE ).shiftRight( 1 );
+                    be = -s;
+                }
+
+                if( f.equals( two64 )) {
+                    f = f.shiftRight( 1 );
+                    be++;
+                }
+
+                u_f[i] = f.longValue();
+                e[i] = be;
+            }
+        }
+    }
+
+    /**
+     * 10^-k for k from {@code min} to {@code max} as b * 2^r with
+     * 2^125 <= b < 2^126, rounded up to floor(b) + 1 and split in two 63 bit
+     * halves, for Schubfach.
+     */
+    public static final class Table128 {
+
+        public final int min_ten_exp;
+        public final long[] u_g1;
+        public final long[] u_g0;
+
+        public Table128( int min_ten_exp, int max_ten_exp ) {
+
+            this.min_ten_exp = min_ten_exp;
+
+            int n = max_ten_exp - min_ten_exp + 1;
+            u_g1 = new long[n];
+            u_g0 = new long[n];
+
+            for( int i = 0; i < n; ++i ) {
+
+                int k = min_ten_exp + i;
+                BigInteger b;
+
+                if( k <= 0 ) {
+                    // floor(log2(10^-k)) is one less than its bit length
+                    BigInteger p = BigInteger.TEN.pow( -k );
+                    b = p.shiftRight( p.bitLength() - 126 ); // shiftRight takes negatives
+                }
+                else {
+                    // and for 10^-k, 10^k is never a power of 2, so minus its bit length
+                    BigInteger p = BigInteger.TEN.pow( k );
+                    b = BigInteger.ONE.shiftLeft( 125 + p.bitLength() ).divide( p );
+                }
+
+                BigInteger g = b.add( BigInteger.ONE );
+                u_g1[i] = g.shiftRight( 63 ).longValue();
+                u_g0[i] = g.and( mask63 ).longValue();
+            }
+        }
+    }
+
+    public static void main( String[] args ) throws IOException {
+
+        if( args.length != 1 ) {
+            System.err.println( "usage: PowerTableGenerator outdir" );
+            System.exit( 2 );
+        }
+
+        Path dir = Paths.get( args[0], "zerog", "util", "grisu" );
+        Files.createDirectories( dir );
+
+        try( Writer w = Files.newBufferedWriter( dir.resolve( "PowerTables.java" ), StandardCharsets.UTF_8 )) {
+            w.write( source() );
+        }
+    }
+
+    static String source() {
+
+        Table64 grisu = new Table64( -348, 340, 8 );
+        Table64 dense = new Table64( -348, 340, 1 );
+        Table128 shortest = new Table128( -324, 343 );
+
+        StringBuilder sb = new StringBuilder();
+        sb.append( "package zerog.util.grisu;\n\n" );
+        sb.append( "// Generated by zerog.util.grisu.tools.PowerTableGenerator, do not edit.\n\n" );
+        sb.append( "final class PowerTables {\n\n" );
+        sb.append( "\tprivate PowerTables() {\n\t}\n\n" );
+
+        sb.append( "\t// 10^" ).append( grisu.min_ten_exp ).append( " up by " ).append( grisu.step ).append( ", Loitsch's table\n" );
+        sb.append( "\tstatic final int start_ten_exp = " ).append( grisu.min_ten_exp ).append( ";\n\n" );
+        longs( sb, "u_f", grisu.u_f );
+        ints( sb, "e", grisu.e );
+
+        sb.append( "\t// The same range with every power, for the dense option\n" );
+        longs( sb, "u_f_dense", dense.u_f );
+        ints( sb, "e_dense", dense.e );
+
+        sb.append( "\t// 10^-k from k = " ).append( shortest.min_ten_exp ).append( " in two 63 bit halves, for Schubfach\n" );
+        sb.append( "\tstatic final int g_min_ten_exp = " ).append( shortest.min_ten_exp ).append( ";\n\n" );
+        longs( sb, "u_g1", shortest.u_g1 );
+        longs( sb, "u_g0", shortest.u_g0 );
+
+        sb.append( "}\n" );
+        return sb.toString();
+    }
+
+    static void longs( StringBuilder sb, String name, long[] a ) {
+
+        sb.append( "\tstatic final long " ).append( name ).append( "[] = {\n" );
+        for( int i = 0; i < a.length; ++i ) {
+            if( i % 4 == 0 )
+                sb.append( "\t\t" );
+            sb.append( String.format( "0x%08x_%08xL", a[i] >>> 32, a[i] & 0xffffffffL ));
+            sb.append( i == a.length - 1 ? "\n" : i % 4 == 3 ? ",\n" : ", " );
+        }
+        sb.append( "\t};\n\n" );
+    }
+
+    static void ints( StringBuilder sb, String name, int[] a ) {
+
+        sb.append( "\tstatic final int " ).append( name ).append( "[] = {\n" );
+        for( int i = 0; i < a.length; ++i ) {
+            if( i % 10 == 0 )
+                sb.append( "\t\t" );
+            sb.append( String.format( "%5d", a[i] ));
+            sb.append( i == a.length - 1 ? "\n" : i % 10 == 9 ? ",\n" : ", " );
+        }
+        sb.append( "\t};\n\n" );
+    }
+}